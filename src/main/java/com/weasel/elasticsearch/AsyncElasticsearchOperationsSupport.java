@@ -0,0 +1,157 @@
+package com.weasel.elasticsearch;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.core.EsPage;
+import com.weasel.core.Page;
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.AsyncElasticsearchRepository;
+import com.weasel.elasticsearch.core.WriteBehindBuffer;
+import com.weasel.elasticsearch.core.async.EsFuture;
+import com.weasel.elasticsearch.core.async.Transformer;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.query.GetQuery;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
+import com.weasel.elasticsearch.core.query.SearchQuery;
+
+/**
+ * 在{@link ElasticsearchOperationsSupport}的基础上增加返回{@link EsFuture}的异步方法,调用线程不会被阻塞,
+ * 多个调用可以并发发出后再组合.异步读取的实体不记录变更跟踪的快照
+ * 
+ * @author Dylan
+ */
+public class AsyncElasticsearchOperationsSupport<ID extends Serializable, T> extends ElasticsearchOperationsSupport<ID, T> {
+
+	protected AsyncElasticsearchRepository asyncRepository;
+
+	@Autowired
+	public void setAsyncRepository(AsyncElasticsearchRepository asyncRepository) {
+		this.asyncRepository = asyncRepository;
+	}
+
+	public EsFuture<T> findOneAsync(ID id) {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			T buffered = buffer.getEntity(repository.getIndexName(entityClass), repository.getType(entityClass), stringIdRepresentation(id), entityClass);
+			if (null != buffered) {
+				return EsFuture.completed(buffered);
+			}
+		}
+		GetQuery query = new GetQuery();
+		query.setId(stringIdRepresentation(id));
+		return asyncRepository.queryForObject(query, entityClass);
+	}
+
+	public EsFuture<EsPage<T>> findAllAsync(Page<T> page) {
+		return searchAsync(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).withPageable(page).build());
+	}
+
+	public EsFuture<EsPage<T>> searchAsync(QueryBuilder query, Page<T> page) {
+		return searchAsync(new NativeSearchQueryBuilder().withQuery(query).withPageable(page).build());
+	}
+
+	public EsFuture<EsPage<T>> searchAsync(SearchQuery query) {
+		return asyncRepository.queryForPage(query, entityClass);
+	}
+
+	/**
+	 * @param query
+	 * @param projection class declaring the fields to fetch
+	 * @return
+	 */
+	public <P> EsFuture<EsPage<P>> searchAsync(SearchQuery query, Class<P> projection) {
+		return asyncRepository.queryForPage(query, entityClass, projection);
+	}
+
+	public EsFuture<Long> countAsync() {
+		return asyncRepository.count(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).build(), entityClass);
+	}
+
+	public EsFuture<Boolean> existsAsync(ID id) {
+		return asyncRepository.exists(stringIdRepresentation(id), entityClass);
+	}
+
+	/**
+	 * 写入后按刷新策略刷新,IMMEDIATE时future在刷新完成后才完成
+	 * @param entity
+	 * @return
+	 */
+	public <S extends T> EsFuture<S> saveAsync(final S entity) {
+		DemonPredict.notNull(entity, "Cannot save 'null' entity.");
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.put(createIndexQuery(entity));
+			return EsFuture.completed(entity);
+		}
+		return afterWrite(asyncRepository.index(createIndexQuery(entity)), entity);
+	}
+
+	/**
+	 * 延迟写缓冲区中有文档时,先在缓冲区的刷新线程中写入它们(同一id较旧的写入不能覆盖这次的bulk),调用线程不会被阻塞
+	 * @param entities
+	 * @return
+	 */
+	public <S extends T> EsFuture<BulkResult> saveAsync(List<S> entities) {
+		DemonPredict.notNull(entities, "Cannot insert 'null' as a List.");
+		final List<IndexQuery> queries = new ArrayList<IndexQuery>(entities.size());
+		for (S entity : entities) {
+			queries.add(createIndexQuery(entity));
+		}
+		WriteBehindBuffer buffer = writeBehind;
+		EsFuture<BulkResult> flushed = null == buffer || buffer.size() == 0 ? EsFuture.<BulkResult> completed(null) : buffer.flushAsync();
+		return flushed.flatMap(new Transformer<BulkResult, EsFuture<BulkResult>>() {
+			@Override
+			public EsFuture<BulkResult> apply(BulkResult ignored) {
+				return asyncRepository.bulkIndex(queries);
+			}
+		}).flatMap(new Transformer<BulkResult, EsFuture<BulkResult>>() {
+			@Override
+			public EsFuture<BulkResult> apply(BulkResult result) {
+				return afterWrite(EsFuture.completed(result), result);
+			}
+		});
+	}
+
+	public EsFuture<String> deleteAsync(ID id) {
+		DemonPredict.notNull(id, "Cannot delete entity with id 'null'.");
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.remove(repository.getIndexName(entityClass), repository.getType(entityClass), stringIdRepresentation(id));
+		}
+		EsFuture<String> deleted = asyncRepository.delete(entityClass, stringIdRepresentation(id));
+		return afterWrite(deleted, stringIdRepresentation(id));
+	}
+
+	/**
+	 * the non blocking counterpart of refreshAfterWrite
+	 */
+	private <W, R> EsFuture<R> afterWrite(EsFuture<W> write, final R result) {
+		return write.flatMap(new Transformer<W, EsFuture<R>>() {
+			@Override
+			public EsFuture<R> apply(W written) {
+				switch (refreshPolicy) {
+				case IMMEDIATE:
+					return asyncRepository.refresh(repository.getIndexName(entityClass)).map(new Transformer<Void, R>() {
+						@Override
+						public R apply(Void refreshed) {
+							return result;
+						}
+					}, null);
+				case COALESCED:
+					repository.scheduleRefresh(repository.getIndexName(entityClass));
+					return EsFuture.completed(result);
+				default:
+					return EsFuture.completed(result);
+				}
+			}
+		});
+	}
+}
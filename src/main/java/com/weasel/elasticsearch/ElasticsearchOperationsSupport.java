@@ -7,17 +7,26 @@ import java.io.Serializable;
 import java.lang.reflect.Field;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
 
 import org.apache.commons.lang.StringUtils;
 import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.suggest.SuggestResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.suggest.Suggest.Suggestion.Entry;
 import org.elasticsearch.search.suggest.Suggest.Suggestion.Entry.Option;
 import org.elasticsearch.search.suggest.SuggestBuilder;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import com.weasel.core.EsPage;
@@ -25,9 +34,25 @@ import com.weasel.core.Page;
 import com.weasel.core.annotation.Id;
 import com.weasel.core.helper.DemonPredict;
 import com.weasel.core.helper.GodHands;
+import com.weasel.elasticsearch.core.ChangeTracker;
+import com.weasel.elasticsearch.core.CloseableIterator;
+import com.weasel.elasticsearch.core.CursorPage;
 import com.weasel.elasticsearch.core.ElasticsearchRepository;
 import com.weasel.elasticsearch.core.HighlightFieldResultParser;
+import com.weasel.elasticsearch.core.MultiGetResult;
+import com.weasel.elasticsearch.core.MultiSearchResult;
+import com.weasel.elasticsearch.core.RefreshPolicy;
 import com.weasel.elasticsearch.core.SearchResultParser;
+import com.weasel.elasticsearch.core.WriteBehindBuffer;
+import com.weasel.elasticsearch.core.bulk.BulkProgress;
+import com.weasel.elasticsearch.core.bulk.BulkProgressListener;
+import com.weasel.elasticsearch.core.bulk.BulkProgressTracker;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.bulk.BulkRetryPolicy;
+import com.weasel.elasticsearch.core.bulk.DeadLetterHandler;
+import com.weasel.elasticsearch.core.bulk.ElasticsearchBulkProcessor;
+import com.weasel.elasticsearch.core.bulk.LoggingDeadLetterHandler;
+import com.weasel.elasticsearch.core.cache.NearCache;
 import com.weasel.elasticsearch.core.query.DeleteQuery;
 import com.weasel.elasticsearch.core.query.GetQuery;
 import com.weasel.elasticsearch.core.query.IndexQuery;
@@ -37,7 +62,7 @@ import com.weasel.elasticsearch.core.query.SearchQuery;
 import com.weasel.elasticsearch.core.query.SuggestQuery;
 import com.weasel.elasticsearch.core.query.UpdateQuery;
 import com.weasel.elasticsearch.core.query.UpdateQueryBuilder;
-import com.weasel.helper.JsonHelper;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
 
 /**
  * @author Rizwan Idrees
@@ -46,11 +71,17 @@ import com.weasel.helper.JsonHelper;
  * @author Dylan
  * @time 2013-11-18
  */
-public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
+public class ElasticsearchOperationsSupport <ID extends Serializable,T> implements DisposableBean{
 
+	public static final int DEFAULT_STREAM_CHUNK_SIZE = 1000;
+	private static final int STREAM_CONCURRENT_REQUESTS = 2;
+	
 	protected ElasticsearchRepository repository;
 	protected Class<T> entityClass;
 	protected String idName;
+	protected RefreshPolicy refreshPolicy = RefreshPolicy.IMMEDIATE;
+	protected volatile ChangeTracker changeTracker;
+	protected volatile WriteBehindBuffer writeBehind;
 	
 	@SuppressWarnings("unchecked")
 	public ElasticsearchOperationsSupport(){
@@ -73,24 +104,178 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 		repository.createIndex(entityClass);
 	}
 	
+	/**
+	 * 写操作之后的刷新策略,默认每次写操作后立即刷新
+	 * @param refreshPolicy
+	 */
+	public void setRefreshPolicy(RefreshPolicy refreshPolicy) {
+		DemonPredict.notNull(refreshPolicy, "refreshPolicy must not be 'null'.");
+		this.refreshPolicy = refreshPolicy;
+	}
+	
+	public RefreshPolicy getRefreshPolicy() {
+		return refreshPolicy;
+	}
+	
+	/**
+	 * 开启变更跟踪:通过findOne/search加载的实体会保留快照,update(entity,false)时只发送变化的字段.
+	 * 带高亮的搜索结果不记录快照
+	 * @param capacity 最多保留的快照数,按LRU淘汰
+	 */
+	public void enableChangeTracking(int capacity) {
+		DemonPredict.isTrue(capacity > 0, "capacity must be positive.");
+		this.changeTracker = new ChangeTracker(capacity);
+	}
+	
+	public void disableChangeTracking() {
+		this.changeTracker = null;
+	}
+	
+	/**
+	 * 在findOne前面加一个本地缓存,本进程的save/update/delete会使对应的条目失效
+	 * @param maxEntries 最多缓存的文档数,按LRU淘汰
+	 * @param ttl 条目的有效时间(毫秒),0表示不过期
+	 * @param storage OFF_HEAP时序列化后的文档保存在堆外
+	 */
+	public void enableNearCache(int maxEntries, long ttl, NearCache.Storage storage) {
+		repository.setNearCache(entityClass, new NearCache(maxEntries, ttl, storage));
+	}
+	
+	public void disableNearCache() {
+		repository.setNearCache(entityClass, null);
+	}
+	
+	/**
+	 * @return the near cache of the entity, null if it is not enabled
+	 */
+	public NearCache getNearCache() {
+		return repository.getNearCache(entityClass);
+	}
+	
+	/**
+	 * 开启延迟写:save(entity)先写入内存缓冲区,同一id的多次写入合并为最后一次,缓冲区满或者到达间隔时批量写入.
+	 * findOne能读到缓冲中的写入,search在写入之前看不到它们.最终写入失败的文档只记录到日志,
+	 * 需要保留它们时使用{@link #enableWriteBehind(int, long, DeadLetterHandler)}
+	 * @param maxSize 缓冲的文档数达到它时刷新;达到它的10倍时(es写入跟不上)save抛出ElasticsearchException
+	 * @param flushInterval 刷新间隔(毫秒)
+	 */
+	public void enableWriteBehind(int maxSize, long flushInterval) {
+		enableWriteBehind(maxSize, flushInterval, new LoggingDeadLetterHandler());
+	}
+	
+	/**
+	 * 开启延迟写,save已经返回的文档最终写入失败时交给deadLetterHandler
+	 * @param maxSize 缓冲的文档数达到它时刷新;达到它的10倍时(es写入跟不上)save抛出ElasticsearchException
+	 * @param flushInterval 刷新间隔(毫秒)
+	 * @param deadLetterHandler 永久失败或重试次数用完的文档
+	 */
+	public synchronized void enableWriteBehind(int maxSize, long flushInterval, DeadLetterHandler deadLetterHandler) {
+		DemonPredict.isTrue(null == writeBehind, "write-behind already enabled.");
+		DemonPredict.notNull(deadLetterHandler, "deadLetterHandler must not be null.");
+		WriteBehindBuffer buffer = new WriteBehindBuffer(repository, maxSize, flushInterval, new BulkRetryPolicy().withDeadLetterHandler(deadLetterHandler));
+		buffer.setAfterFlush(new Runnable() {
+			@Override
+			public void run() {
+				refreshAfterWrite();
+			}
+		});
+		this.writeBehind = buffer;
+	}
+	
+	/**
+	 * 立即写入延迟写缓冲区中的文档
+	 */
+	public void flush() {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.flush();
+		}
+	}
+	
+	/**
+	 * 容器关闭时写入延迟写缓冲区中剩余的文档
+	 */
+	@Override
+	public void destroy() {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			writeBehind = null;
+			buffer.close();
+		}
+	}
+	
 	public T findOne(ID id) {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			T buffered = buffer.getEntity(repository.getIndexName(entityClass), repository.getType(entityClass), stringIdRepresentation(id), entityClass);
+			if (null != buffered) {
+				return buffered;
+			}
+		}
 		GetQuery query = new GetQuery();
 		query.setId(stringIdRepresentation(id));
-		return repository.queryForObject(query, entityClass);
+		return track(repository.queryForObject(query, entityClass));
 	}
 	
-	public Iterable<T> findAll() {
-		int itemCount = (int) this.count();
-		if (itemCount == 0) {
-			return Collections.<T> emptyList();
+	/**
+	 * 通过multi get按id批量获取,一次或几次请求代替逐个findOne
+	 * @param ids
+	 * @return 按ids顺序排列的结果,以及不存在的id
+	 */
+	public MultiGetResult<T> findAll(Iterable<ID> ids) {
+		DemonPredict.notNull(ids, "Cannot find 'null' ids.");
+		String indexName = repository.getIndexName(entityClass);
+		String type = repository.getType(entityClass);
+		WriteBehindBuffer buffer = writeBehind;
+		List<String> stringIds = new ArrayList<String>();
+		List<String> toFetch = new ArrayList<String>();
+		Map<String, T> buffered = new HashMap<String, T>();
+		for (ID id : ids) {
+			String stringId = stringIdRepresentation(id);
+			stringIds.add(stringId);
+			T entity = null == buffer ? null : buffer.getEntity(indexName, type, stringId, entityClass);
+			if (null != entity) {
+				buffered.put(stringId, entity);
+			} else {
+				toFetch.add(stringId);
+			}
+		}
+		MultiGetResult<T> fetched = repository.findAll(toFetch, entityClass);
+		for (T entity : fetched) {
+			track(entity);
 		}
+		if (buffered.isEmpty()) {
+			return fetched;
+		}
+		MultiGetResult<T> result = new MultiGetResult<T>(stringIds.size());
+		Set<String> missing = new HashSet<String>(fetched.getMissingIds());
+		Iterator<T> found = fetched.iterator();
+		for (String stringId : stringIds) {
+			if (buffered.containsKey(stringId)) {
+				result.addResult(buffered.get(stringId));
+			} else if (fetched.getFailures().containsKey(stringId)) {
+				result.addFailure(stringId, fetched.getFailures().get(stringId));
+			} else if (missing.contains(stringId)) {
+				result.addMissing(stringId);
+			} else {
+				result.addResult(found.next());
+			}
+		}
+		return result;
+	}
+	
+	/**
+	 * 不再先count:文档不多时一次请求同时返回总数和全部结果,多的时候通过同一个scroll分批读取.
+	 * 所有结果都会留在内存中,文档很多时用{@link #stream(QueryBuilder)}或者{@link #iterate(SearchQuery)}逐批处理
+	 */
+	public Iterable<T> findAll() {
 		SearchQuery query = new NativeSearchQueryBuilder().withQuery(matchAllQuery()).build();
-		return repository.queryForList(query, entityClass);
+		return repository.queryForAll(query, entityClass).getResult();
 	}
 	
 	public Page<T> findAll(Page<T> page) {
 		SearchQuery query = new NativeSearchQueryBuilder().withQuery(matchAllQuery()).withPageable(page).build();
-		return repository.queryForPage(query, entityClass);
+		return track(repository.queryForPage(query, entityClass));
 	}
 	
 	public long count() {
@@ -100,17 +285,53 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 	
 	public <S extends T> S save(S entity) {
 		DemonPredict.notNull(entity, "Cannot save 'null' entity.");
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.put(createIndexQuery(entity));
+			return entity;
+		}
 		repository.index(createIndexQuery(entity));
-		repository.refresh(repository.getIndexName(entityClass), true);
+		refreshAfterWrite();
 		return entity;
 	}
 	
 	public <S extends T> void update(S entity,boolean upsert) {
-		 IndexRequest indexRequest = new IndexRequest();
-		 indexRequest.source(JsonHelper.toJsonString(entity));
-		 UpdateQuery updateQuery = new UpdateQueryBuilder().withId(stringIdRepresentation(extractIdFromBean(entity))).withDoUpsert(upsert)
-	                .withClass(entity.getClass()).withIndexRequest(indexRequest).build();
-		 repository.update(updateQuery);
+		UpdateQuery updateQuery = createUpdateQuery(entity, upsert);
+		if (null == updateQuery) {
+			return;
+		}
+		flushBuffered(updateQuery.getId());
+		try {
+			repository.update(updateQuery);
+		} catch (RuntimeException e) {
+			forget(updateQuery.getId());
+			throw e;
+		}
+	}
+	
+	/**
+	 * 批量局部更新,分批以bulk请求发送
+	 * @param entities
+	 * @param upsert 不存在是否插入
+	 * @return 每个实体的更新结果
+	 */
+	public <S extends T> BulkResult update(List<S> entities,boolean upsert) {
+		DemonPredict.notNull(entities, "Cannot update 'null' as a List.");
+		List<UpdateQuery> queries = new ArrayList<UpdateQuery>(entities.size());
+		for (S entity : entities) {
+			UpdateQuery updateQuery = createUpdateQuery(entity, upsert);
+			if (null != updateQuery) {
+				queries.add(updateQuery);
+			}
+		}
+		flush();
+		BulkResult result = repository.bulkUpdate(queries);
+		if (null != changeTracker && result.hasFailures()) {
+			for (String id : result.getFailedDocuments().keySet()) {
+				forget(id);
+			}
+		}
+		return result;
 	}
 	
 	public <S extends T> List<S> save(List<S> entities) {
@@ -119,8 +340,9 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 		for (S s : entities) {
 			queries.add(createIndexQuery(s));
 		}
+		flush();
 		repository.bulkIndex(queries);
-		repository.refresh(repository.getIndexName(entityClass), true);
+		refreshAfterWrite();
 		return entities;
 	}
 
@@ -131,36 +353,123 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 	public <S extends T> Iterable<S> save(Iterable<S> entities) {
 		DemonPredict.notNull(entities, "Cannot insert 'null' as a List.");
 		if (!(entities instanceof Collection<?>)) {
-			throw new RuntimeException("Entities have to be inside a collection");
+			BulkProgress progress = save(entities.iterator(), DEFAULT_STREAM_CHUNK_SIZE, null);
+			if (progress.getFailed() > 0) {
+				throw new ElasticsearchException("Bulk indexing has failures. Use ElasticsearchException.getFailedDocuments() for detailed messages ["
+						+ progress.getFailedDocuments() + "]", progress.getFailedDocuments());
+			}
+			return entities;
 		}
 		List<IndexQuery> queries = new ArrayList<IndexQuery>();
 		for (S s : entities) {
 			queries.add(createIndexQuery(s));
 		}
+		flush();
 		repository.bulkIndex(queries);
-		repository.refresh(repository.getIndexName(entityClass), true);
+		refreshAfterWrite();
 		return entities;
 	}
 	
+	/**
+	 * 流式保存:边序列化边按chunkSize分批异步发送,同时最多有两个批次在途,内存占用与输入大小无关.
+	 * 失败的文档不会抛出异常,通过返回值(或listener)获取
+	 * @param entities
+	 * @param chunkSize 每个bulk请求的文档数
+	 * @param listener 每完成一个bulk回调一次,可以为null
+	 * @return 最终的进度统计
+	 */
+	public <S extends T> BulkProgress save(Iterator<S> entities, int chunkSize, BulkProgressListener listener) {
+		DemonPredict.notNull(entities, "Cannot insert 'null' as an Iterator.");
+		DemonPredict.isTrue(chunkSize > 0, "chunkSize must be positive.");
+		BulkProgressTracker tracker = new BulkProgressTracker(listener);
+		// an older buffered write of the same id must not overwrite what is streamed here
+		flush();
+		ElasticsearchBulkProcessor processor = repository.prepareBulkProcessor()
+														 .withBulkActions(chunkSize)
+														 .withBulkSize(-1)
+														 .withConcurrentRequests(STREAM_CONCURRENT_REQUESTS)
+														 .withListener(tracker)
+														 .build();
+		try {
+			while (entities.hasNext()) {
+				processor.add(createIndexQuery(entities.next()));
+			}
+		} finally {
+			processor.close();
+		}
+		refreshAfterWrite();
+		return tracker.getProgress();
+	}
+	
+	public <S extends T> BulkProgress save(Iterator<S> entities) {
+		return save(entities, DEFAULT_STREAM_CHUNK_SIZE, null);
+	}
+	
+	/**
+	 * 不再先count再用一个size为总数的请求:结果不多时一次请求返回,多的时候通过scroll分批读取.
+	 * 所有结果都会留在内存中,结果很多时用{@link #stream(QueryBuilder)}或者{@link #iterate(SearchQuery)}逐批处理
+	 */
 	public Iterable<T> search(QueryBuilder query) {
 		SearchQuery searchQuery = new NativeSearchQueryBuilder().withQuery(query).build();
-		int count = (int) repository.count(searchQuery, entityClass);
-		if (count == 0) {
-			return Collections.<T> emptyList();
-		}
-		Page<T> page = new Page<T>();
-		page.setPageSize(count);
-		searchQuery.setPageable(page);
-		return repository.queryForPage(searchQuery, entityClass).getResult();
+		return track(repository.queryForAll(searchQuery, entityClass)).getResult();
+	}
+	
+	/**
+	 * 惰性迭代全部匹配的文档,内存中只保留一批hits.没有迭代到末尾时必须close
+	 * @param query
+	 * @return
+	 */
+	public CloseableIterator<T> stream(QueryBuilder query) {
+		return iterate(new NativeSearchQueryBuilder().withQuery(query).build());
+	}
+	
+	/**
+	 * 惰性迭代全部匹配的文档,忽略query的分页(排序保留).没有迭代到末尾时必须close
+	 * @param query
+	 * @return
+	 */
+	public CloseableIterator<T> iterate(SearchQuery query) {
+		return repository.iterate(query, entityClass);
 	}
 
 	public Page<T> search(QueryBuilder query, Page<T> page) {
 		SearchQuery searchQuery = new NativeSearchQueryBuilder().withQuery(query).withPageable(page).build();
-		return repository.queryForPage(searchQuery, entityClass);
+		return track(repository.queryForPage(searchQuery, entityClass));
 	}
 
 	public EsPage<T> search(SearchQuery query) {
-		return repository.queryForPage(query, entityClass);
+		EsPage<T> page = repository.queryForPage(query, entityClass);
+		// tracking a lazy page would build every entity up front
+		return null == query.getHighlightFields() && !query.isLazyResults() ? track(page) : page;
+	}
+	
+	/**
+	 * 游标分页,翻到很深的页也不会变慢
+	 * @param query 第一页不带cursor,之后带上一页的nextCursor
+	 * @return
+	 */
+	public CursorPage<T> searchByCursor(SearchQuery query) {
+		return repository.queryForCursorPage(query, entityClass);
+	}
+	
+	/**
+	 * 投影查询:只获取并解析投影类中声明的字段
+	 * @param query
+	 * @param projection
+	 * @return
+	 */
+	public <P> EsPage<P> search(SearchQuery query, Class<P> projection) {
+		return repository.queryForPage(query, entityClass, projection);
+	}
+	
+	/**
+	 * 多个互不相关的查询通过一次multi search执行
+	 * @param queries
+	 * @return 按查询顺序每个查询一个page,失败单独报告
+	 */
+	public MultiSearchResult<T> search(List<SearchQuery> queries) {
+		DemonPredict.notNull(queries, "Cannot search 'null' queries.");
+		return repository.queryForPages(queries, entityClass);
 	}
 	
 	public EsPage<T> search(SearchQuery query,SearchResultParser<T> parser){
@@ -207,29 +516,62 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 
 	public void delete(ID id) {
 		DemonPredict.notNull(id, "Cannot delete entity with id 'null'.");
+		removeBuffered(stringIdRepresentation(id));
 		repository.delete(repository.getIndexName(entityClass), repository.getType(entityClass),
 				stringIdRepresentation(id));
-		repository.refresh(repository.getIndexName(entityClass), true);
+		forget(stringIdRepresentation(id));
+		refreshAfterWrite();
 	}
 
 	public void delete(T entity) {
 		DemonPredict.notNull(entity, "Cannot delete 'null' entity.");
 		delete(extractIdFromBean(entity));
-		repository.refresh(repository.getIndexName(entityClass), true);
 	}
 
 	public void delete(Iterable<? extends T> entities) {
 		DemonPredict.notNull(entities, "Cannot delete 'null' list.");
+		List<ID> ids = new ArrayList<ID>();
 		for (T entity : entities) {
-			delete(entity);
+			ids.add(extractIdFromBean(entity));
+		}
+		BulkResult result = deleteByIds(ids);
+		if (result.hasFailures()) {
+			throw new ElasticsearchException("Bulk deleting has failures. Use ElasticsearchException.getFailedDocuments() for detailed messages ["
+					+ result.getFailedDocuments() + "]", result.getFailedDocuments());
 		}
 	}
 
+	/**
+	 * 按id分批bulk删除,所有批次完成后只刷新一次
+	 * @param ids
+	 * @return 每个id的删除结果
+	 */
+	public BulkResult deleteByIds(Iterable<ID> ids) {
+		DemonPredict.notNull(ids, "Cannot delete 'null' list.");
+		List<String> stringIds = new ArrayList<String>();
+		for (ID id : ids) {
+			DemonPredict.notNull(id, "Cannot delete entity with id 'null'.");
+			stringIds.add(stringIdRepresentation(id));
+			removeBuffered(stringIdRepresentation(id));
+			forget(stringIdRepresentation(id));
+		}
+		BulkResult result = repository.bulkDelete(entityClass, stringIds);
+		refreshAfterWrite();
+		return result;
+	}
+
 	public void deleteAll() {
 		DeleteQuery deleteQuery = new DeleteQuery();
 		deleteQuery.setQuery(matchAllQuery());
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.clear();
+		}
 		repository.delete(deleteQuery, entityClass);
-		repository.refresh(repository.getIndexName(entityClass), true);
+		if (null != changeTracker) {
+			changeTracker.clear();
+		}
+		refreshAfterWrite();
 	}
 	
 	
@@ -237,7 +579,77 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 		return repository.getEsClient();
 	}
 
-	private IndexQuery createIndexQuery(T entity) {
+	/**
+	 * @return null if change tracking is on and nothing changed since the snapshot
+	 */
+	private UpdateQuery createUpdateQuery(T entity, boolean upsert) {
+		String id = stringIdRepresentation(extractIdFromBean(entity));
+		IndexRequest indexRequest = new IndexRequest();
+		BytesReference source = repository.toSource(entity);
+		ChangeTracker tracker = changeTracker;
+		if (null != tracker && !upsert) {
+			Map<String, Object> current = ChangeTracker.toMap(source);
+			Map<String, Object> changes = tracker.diff(id, current);
+			tracker.snapshot(id, current);
+			if (null != changes && changes.isEmpty()) {
+				return null;
+			}
+			if (null != changes) {
+				indexRequest.source(changes);
+			} else {
+				indexRequest.source(source, false);
+			}
+		} else {
+			forget(id);
+			indexRequest.source(source, false);
+		}
+		return new UpdateQueryBuilder().withId(id).withDoUpsert(upsert)
+				.withClass(entity.getClass()).withIndexRequest(indexRequest).build();
+	}
+	
+	private T track(T entity) {
+		ChangeTracker tracker = changeTracker;
+		if (null != tracker && null != entity) {
+			tracker.snapshot(stringIdRepresentation(extractIdFromBean(entity)), repository.toSource(entity));
+		}
+		return entity;
+	}
+	
+	private <P extends Page<T>> P track(P page) {
+		if (null != changeTracker && null != page && null != page.getResult()) {
+			for (T entity : page.getResult()) {
+				track(entity);
+			}
+		}
+		return page;
+	}
+	
+	/**
+	 * a partial update must not be overtaken by an older buffered full write of the same document
+	 */
+	private void flushBuffered(String id) {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer && null != buffer.get(repository.getIndexName(entityClass), repository.getType(entityClass), id)) {
+			buffer.flush();
+		}
+	}
+	
+	private void removeBuffered(String id) {
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer) {
+			buffer.remove(repository.getIndexName(entityClass), repository.getType(entityClass), id);
+		}
+	}
+	
+	private void forget(String id) {
+		ChangeTracker tracker = changeTracker;
+		if (null != tracker) {
+			tracker.forget(id);
+		}
+	}
+	
+	protected IndexQuery createIndexQuery(T entity) {
+		forget(stringIdRepresentation(extractIdFromBean(entity)));
 		IndexQuery query = new IndexQuery();
 		query.setObject(entity);
 		query.setId(stringIdRepresentation(extractIdFromBean(entity)));
@@ -245,8 +657,77 @@ public class ElasticsearchOperationsSupport <ID extends Serializable,T>{
 		return query;
 	}
 	
+	/**
+	 * 等待一次在调用之后开始的刷新完成,之后之前的写操作对搜索可见
+	 */
+	public void awaitRefresh() {
+		String indexName = repository.getIndexName(entityClass);
+		if (RefreshPolicy.COALESCED != refreshPolicy) {
+			repository.refresh(indexName, true);
+			return;
+		}
+		try {
+			repository.scheduleRefresh(indexName).get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("interrupted while waiting for the refresh of [" + indexName + "]", e);
+		} catch (ExecutionException e) {
+			throw new ElasticsearchException("failed to refresh [" + indexName + "]", e.getCause());
+		}
+	}
+	
+	protected void refreshAfterWrite() {
+		switch (refreshPolicy) {
+		case IMMEDIATE:
+			repository.refresh(repository.getIndexName(entityClass), true);
+			break;
+		case COALESCED:
+			repository.scheduleRefresh(repository.getIndexName(entityClass));
+			break;
+		default:
+			break;
+		}
+	}
+	
 	public boolean exists(ID id) {
-		return findOne(id) != null;
+		String stringId = stringIdRepresentation(id);
+		WriteBehindBuffer buffer = writeBehind;
+		if (null != buffer && null != buffer.get(repository.getIndexName(entityClass), repository.getType(entityClass), stringId)) {
+			return true;
+		}
+		return repository.exists(stringId, entityClass);
+	}
+	
+	/**
+	 * 一次multi get检查多个id是否存在,不获取_source
+	 * @param ids
+	 * @return 存在的id,保持ids中的顺序
+	 */
+	public Set<ID> existsAll(Iterable<ID> ids) {
+		DemonPredict.notNull(ids, "Cannot check 'null' ids.");
+		String indexName = repository.getIndexName(entityClass);
+		String type = repository.getType(entityClass);
+		WriteBehindBuffer buffer = writeBehind;
+		Map<String, ID> idMap = new LinkedHashMap<String, ID>();
+		Set<String> buffered = new HashSet<String>();
+		List<String> toCheck = new ArrayList<String>();
+		for (ID id : ids) {
+			String stringId = stringIdRepresentation(id);
+			idMap.put(stringId, id);
+			if (null != buffer && null != buffer.get(indexName, type, stringId)) {
+				buffered.add(stringId);
+			} else {
+				toCheck.add(stringId);
+			}
+		}
+		Set<String> existing = repository.existsAll(toCheck, entityClass);
+		Set<ID> result = new LinkedHashSet<ID>();
+		for (Map.Entry<String, ID> entry : idMap.entrySet()) {
+			if (buffered.contains(entry.getKey()) || existing.contains(entry.getKey())) {
+				result.add(entry.getValue());
+			}
+		}
+		return result;
 	}
 	
 	@SuppressWarnings("unchecked")
@@ -1,7 +1,9 @@
 package com.weasel.elasticsearch;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import org.elasticsearch.action.suggest.SuggestResponse;
 import org.elasticsearch.client.Client;
@@ -9,8 +11,15 @@ import org.elasticsearch.index.query.QueryBuilder;
 
 import com.weasel.core.EsPage;
 import com.weasel.core.Page;
+import com.weasel.elasticsearch.core.CloseableIterator;
+import com.weasel.elasticsearch.core.CursorPage;
 import com.weasel.elasticsearch.core.HighlightFieldResultParser;
+import com.weasel.elasticsearch.core.MultiGetResult;
+import com.weasel.elasticsearch.core.MultiSearchResult;
 import com.weasel.elasticsearch.core.SearchResultParser;
+import com.weasel.elasticsearch.core.bulk.BulkProgress;
+import com.weasel.elasticsearch.core.bulk.BulkProgressListener;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
 import com.weasel.elasticsearch.core.query.SearchQuery;
 import com.weasel.elasticsearch.core.query.SuggestQuery;
 
@@ -42,12 +51,33 @@ public interface ElasticsearchRepositorySupport<ID extends Serializable,T> {
 	 */
 	Page<T> findAll(Page<T> page);
 
+	/**
+	 * @param ids
+	 * @return the entities found in the order of the ids, plus the ids which do not exist
+	 */
+	MultiGetResult<T> findAll(Iterable<ID> ids);
+
 	/**
 	 * @param entities
 	 * @return
 	 */
 	<S extends T> Iterable<S> save(Iterable<S> entities);
 
+	/**
+	 * 流式保存,内存占用与输入大小无关
+	 * @param entities
+	 * @param chunkSize
+	 * @param listener 可以为null
+	 * @return
+	 */
+	<S extends T> BulkProgress save(Iterator<S> entities, int chunkSize, BulkProgressListener listener);
+
+	/**
+	 * @param entities
+	 * @return
+	 */
+	<S extends T> BulkProgress save(Iterator<S> entities);
+
 	/**
 	 * @param entity
 	 * @return
@@ -65,6 +95,13 @@ public interface ElasticsearchRepositorySupport<ID extends Serializable,T> {
 	 * @param upsert 不存在是否插入
 	 */
 	<S extends T> void update(S entity,boolean upsert);
+	
+	/**
+	 * @param entities
+	 * @param upsert 不存在是否插入
+	 * @return per entity results
+	 */
+	<S extends T> BulkResult update(List<S> entities,boolean upsert);
 
 	/**
 	 * @param id
@@ -72,12 +109,30 @@ public interface ElasticsearchRepositorySupport<ID extends Serializable,T> {
 	 */
 	boolean exists(ID id);
 
+	/**
+	 * @param ids
+	 * @return the ids which exist, checked with one multi get round trip
+	 */
+	Set<ID> existsAll(Iterable<ID> ids);
+
 	/**
 	 * @param query
 	 * @return
 	 */
 	Iterable<T> search(QueryBuilder query);
 
+	/**
+	 * @param query
+	 * @return a lazy iterator over all matching entities, which must be closed if not consumed to the end
+	 */
+	CloseableIterator<T> stream(QueryBuilder query);
+
+	/**
+	 * @param query
+	 * @return a lazy iterator over all matching entities, which must be closed if not consumed to the end
+	 */
+	CloseableIterator<T> iterate(SearchQuery query);
+
 	/**
 	 * @param query
 	 * @param page
@@ -90,6 +145,25 @@ public interface ElasticsearchRepositorySupport<ID extends Serializable,T> {
 	 * @return
 	 */
 	EsPage<T> search(SearchQuery query);
+
+	/**
+	 * @param query with the cursor of the previous page, none for the first page
+	 * @return one page and the cursor of the next one
+	 */
+	CursorPage<T> searchByCursor(SearchQuery query);
+
+	/**
+	 * @param query
+	 * @param projection class declaring the fields to fetch
+	 * @return
+	 */
+	<P> EsPage<P> search(SearchQuery query, Class<P> projection);
+
+	/**
+	 * @param queries independent queries sent in one round trip
+	 * @return one page per query, failures reported per query
+	 */
+	MultiSearchResult<T> search(List<SearchQuery> queries);
 	
 	/**
 	 * @param query
@@ -127,11 +201,27 @@ public interface ElasticsearchRepositorySupport<ID extends Serializable,T> {
 	 */
 	void delete(Iterable<? extends T> entities);
 
+	/**
+	 * @param ids
+	 * @return per id results
+	 */
+	BulkResult deleteByIds(Iterable<ID> ids);
+
 	/**
 	 * 
 	 */
 	void deleteAll();
 
+	/**
+	 * wait until the writes made so far are visible to search
+	 */
+	void awaitRefresh();
+
+	/**
+	 * write the documents held back by the write-behind buffer now, no-op if it is not enabled
+	 */
+	void flush();
+
 	/**
 	 * @param entities
 	 * @return
@@ -0,0 +1,25 @@
+package com.weasel.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Inherited;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import org.elasticsearch.action.search.SearchType;
+
+/**
+ * 实体的默认search type,与@Document一起标注在实体类上.查询中指定的search type优先,
+ * 都没有指定时使用ElasticsearchOperations的全局默认值
+ * 
+ * @author Dylan
+ */
+@Documented
+@Inherited
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.TYPE)
+public @interface DocumentSearchType {
+
+	SearchType value();
+}
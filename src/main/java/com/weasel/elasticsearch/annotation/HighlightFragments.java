@@ -0,0 +1,30 @@
+package com.weasel.elasticsearch.annotation;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.weasel.elasticsearch.core.highlight.FragmentMerger;
+
+/**
+ * 声明高亮字段的片段如何合并,标注在实体(或嵌套对象)的字段上.没有标注的字段只取第一个片段
+ * 
+ * @author Dylan
+ */
+@Documented
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.FIELD)
+public @interface HighlightFragments {
+
+	/**
+	 * all fragments are joined with the separator, unless a {@link #merger()} is given
+	 */
+	String separator() default " ... ";
+
+	/**
+	 * a custom merger, instantiated once per field
+	 */
+	Class<? extends FragmentMerger> merger() default FragmentMerger.class;
+}
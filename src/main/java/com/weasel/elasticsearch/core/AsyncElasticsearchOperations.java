@@ -0,0 +1,257 @@
+package com.weasel.elasticsearch.core;
+
+import static org.elasticsearch.client.Requests.refreshRequest;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequestBuilder;
+import org.elasticsearch.action.ActionResponse;
+import org.elasticsearch.action.admin.indices.refresh.RefreshResponse;
+import org.elasticsearch.action.bulk.BulkRequestBuilder;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.count.CountResponse;
+import org.elasticsearch.action.delete.DeleteResponse;
+import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequestBuilder;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexResponse;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.update.UpdateResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Repository;
+import org.springframework.util.Assert;
+
+import com.weasel.core.EsPage;
+import com.weasel.elasticsearch.core.async.EsFuture;
+import com.weasel.elasticsearch.core.async.Transformer;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.query.GetQuery;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.core.query.SearchQuery;
+import com.weasel.elasticsearch.core.query.UpdateQuery;
+
+/**
+ * 基于{@link ElasticsearchOperations}的请求构建和结果解析,用ActionListener代替actionGet
+ * 
+ * @author Dylan
+ */
+@Repository
+public class AsyncElasticsearchOperations implements AsyncElasticsearchRepository {
+
+	private ElasticsearchOperations operations;
+	private Executor resultExecutor;
+
+	@Autowired
+	public void setOperations(ElasticsearchOperations operations) {
+		this.operations = operations;
+	}
+
+	/**
+	 * @param resultExecutor parses the responses; null (the default) parses in the thread the client completes the
+	 *            request in
+	 */
+	public void setResultExecutor(Executor resultExecutor) {
+		this.resultExecutor = resultExecutor;
+	}
+
+	@Override
+	public ElasticsearchRepository getRepository() {
+		return operations;
+	}
+
+	@Override
+	public <T> EsFuture<T> queryForObject(GetQuery query, final Class<T> clazz) {
+		return execute(operations.getEs().prepareGet(operations.getIndexName(clazz), operations.getType(clazz), query.getId()),
+				new Transformer<GetResponse, T>() {
+					@Override
+					public T apply(GetResponse response) {
+						if (response.isSourceEmpty()) {
+							return null;
+						}
+						return operations.getCodecRegistry().decode(response.getSourceAsBytesRef(), clazz);
+					}
+				});
+	}
+
+	@Override
+	public <T> EsFuture<MultiGetResult<T>> findAll(List<String> ids, final Class<T> clazz) {
+		MultiGetRequestBuilder request = operations.getEs().prepareMultiGet();
+		for (String id : ids) {
+			request.add(operations.getIndexName(clazz), operations.getType(clazz), id);
+		}
+		final int size = ids.size();
+		return execute(request, new Transformer<MultiGetResponse, MultiGetResult<T>>() {
+			@Override
+			public MultiGetResult<T> apply(MultiGetResponse response) {
+				MultiGetResult<T> result = new MultiGetResult<T>(size);
+				for (MultiGetItemResponse item : response.getResponses()) {
+					if (item.isFailed()) {
+						result.addFailure(item.getId(), item.getFailure().getMessage());
+					} else if (!item.getResponse().isExists() || item.getResponse().isSourceEmpty()) {
+						result.addMissing(item.getId());
+					} else {
+						result.addResult(operations.getCodecRegistry().decode(item.getResponse().getSourceAsBytesRef(), clazz));
+					}
+				}
+				return result;
+			}
+		});
+	}
+
+	@Override
+	public <T> EsFuture<EsPage<T>> queryForPage(final SearchQuery query, final Class<T> clazz) {
+		return execute(operations.prepareQuery(operations.prepareSearch(query, clazz), query), new Transformer<SearchResponse, EsPage<T>>() {
+			@Override
+			public EsPage<T> apply(SearchResponse response) {
+				return operations.parseResult(response, clazz, query.getPageable(), null);
+			}
+		});
+	}
+
+	@Override
+	public <T, P> EsFuture<EsPage<P>> queryForPage(final SearchQuery query, Class<T> clazz, final Class<P> projection) {
+		return execute(operations.prepareQuery(operations.prepareProjection(query, clazz, projection), query),
+				new Transformer<SearchResponse, EsPage<P>>() {
+					@Override
+					public EsPage<P> apply(SearchResponse response) {
+						return operations.parseResult(response, projection, query.getPageable(), null);
+					}
+				});
+	}
+
+	@Override
+	public <T> EsFuture<Long> count(SearchQuery query, Class<T> clazz) {
+		return execute(operations.prepareCount(query, clazz), new Transformer<CountResponse, Long>() {
+			@Override
+			public Long apply(CountResponse response) {
+				return response.getCount();
+			}
+		});
+	}
+
+	@Override
+	public <T> EsFuture<Boolean> exists(String id, Class<T> clazz) {
+		return execute(operations.getEs().prepareGet(operations.getIndexName(clazz), operations.getType(clazz), id).setFields(new String[0]),
+				new Transformer<GetResponse, Boolean>() {
+					@Override
+					public Boolean apply(GetResponse response) {
+						return response.isExists();
+					}
+				});
+	}
+
+	@Override
+	public EsFuture<String> index(IndexQuery query) {
+		return execute(operations.prepareIndex(query), new Transformer<IndexResponse, String>() {
+			@Override
+			public String apply(IndexResponse response) {
+				// a read racing with the write may have cached the previous version
+				operations.evict(response.getIndex(), response.getType(), response.getId(), response.getVersion());
+				return response.getId();
+			}
+		});
+	}
+
+	@Override
+	public EsFuture<UpdateResponse> update(UpdateQuery query) {
+		return execute(operations.prepareUpdate(query), new Transformer<UpdateResponse, UpdateResponse>() {
+			@Override
+			public UpdateResponse apply(UpdateResponse response) {
+				operations.evict(response.getIndex(), response.getType(), response.getId(), response.getVersion());
+				return response;
+			}
+		});
+	}
+
+	@Override
+	public EsFuture<BulkResult> bulkIndex(List<IndexQuery> queries) {
+		if (queries.isEmpty()) {
+			return EsFuture.completed(new BulkResult());
+		}
+		BulkRequestBuilder request = operations.getEs().prepareBulk();
+		for (IndexQuery query : queries) {
+			request.add(operations.prepareIndex(query));
+		}
+		return execute(request, new Transformer<BulkResponse, BulkResult>() {
+			@Override
+			public BulkResult apply(BulkResponse response) {
+				operations.evict(response);
+				return new BulkResult().add(response);
+			}
+		});
+	}
+
+	@Override
+	public <T> EsFuture<String> delete(Class<T> clazz, String id) {
+		operations.evict(operations.getIndexName(clazz), operations.getType(clazz), id);
+		return execute(operations.getEs().prepareDelete(operations.getIndexName(clazz), operations.getType(clazz), id),
+				new Transformer<DeleteResponse, String>() {
+					@Override
+					public String apply(DeleteResponse response) {
+						operations.evict(response.getIndex(), response.getType(), response.getId());
+						return response.getId();
+					}
+				});
+	}
+
+	@Override
+	public EsFuture<Void> refresh(String indexName) {
+		final EsFuture<Void> future = new EsFuture<Void>();
+		operations.getEs().admin().indices().refresh(refreshRequest(indexName), new ActionListener<RefreshResponse>() {
+			@Override
+			public void onResponse(RefreshResponse response) {
+				future.complete(null);
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				future.fail(e);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * send the request and complete the future with the parsed response, parsing on the result executor
+	 */
+	private <R extends ActionResponse, T> EsFuture<T> execute(ActionRequestBuilder<?, R, ?> request, final Transformer<R, T> parser) {
+		Assert.notNull(operations, "operations must be set");
+		final EsFuture<T> future = new EsFuture<T>();
+		request.execute(new ActionListener<R>() {
+			@Override
+			public void onResponse(final R response) {
+				Runnable parse = new Runnable() {
+					@Override
+					public void run() {
+						try {
+							future.complete(parser.apply(response));
+						} catch (Throwable e) {
+							// errors too, the future must not stay uncompleted
+							future.fail(e);
+						}
+					}
+				};
+				Executor executor = resultExecutor;
+				if (null == executor) {
+					parse.run();
+					return;
+				}
+				try {
+					executor.execute(parse);
+				} catch (RejectedExecutionException e) {
+					future.fail(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable e) {
+				future.fail(e);
+			}
+		});
+		return future;
+	}
+}
@@ -0,0 +1,101 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.List;
+
+import org.elasticsearch.action.update.UpdateResponse;
+
+import com.weasel.core.EsPage;
+import com.weasel.elasticsearch.core.async.EsFuture;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.query.GetQuery;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.core.query.SearchQuery;
+import com.weasel.elasticsearch.core.query.UpdateQuery;
+
+/**
+ * 非阻塞版本的{@link ElasticsearchRepository}.请求通过es client的ActionListener完成,不占用调用线程;
+ * 结果的解析在配置的executor中执行
+ * 
+ * @author Dylan
+ */
+public interface AsyncElasticsearchRepository {
+
+	/**
+	 * @param query
+	 * @param clazz
+	 * @return the object, null if it does not exist
+	 */
+	<T> EsFuture<T> queryForObject(GetQuery query, Class<T> clazz);
+
+	/**
+	 * @param ids
+	 * @param clazz
+	 * @return
+	 */
+	<T> EsFuture<MultiGetResult<T>> findAll(List<String> ids, Class<T> clazz);
+
+	/**
+	 * @param query
+	 * @param clazz
+	 * @return
+	 */
+	<T> EsFuture<EsPage<T>> queryForPage(SearchQuery query, Class<T> clazz);
+
+	/**
+	 * @param query
+	 * @param clazz the entity, which decides index and type
+	 * @param projection
+	 * @return
+	 */
+	<T, P> EsFuture<EsPage<P>> queryForPage(SearchQuery query, Class<T> clazz, Class<P> projection);
+
+	/**
+	 * @param query
+	 * @param clazz
+	 * @return
+	 */
+	<T> EsFuture<Long> count(SearchQuery query, Class<T> clazz);
+
+	/**
+	 * @param id
+	 * @param clazz
+	 * @return
+	 */
+	<T> EsFuture<Boolean> exists(String id, Class<T> clazz);
+
+	/**
+	 * @param query
+	 * @return the id of the document
+	 */
+	EsFuture<String> index(IndexQuery query);
+
+	/**
+	 * @param query
+	 * @return
+	 */
+	EsFuture<UpdateResponse> update(UpdateQuery query);
+
+	/**
+	 * @param queries
+	 * @return per item results in the order of the queries
+	 */
+	EsFuture<BulkResult> bulkIndex(List<IndexQuery> queries);
+
+	/**
+	 * @param clazz
+	 * @param id
+	 * @return the id of the document
+	 */
+	<T> EsFuture<String> delete(Class<T> clazz, String id);
+
+	/**
+	 * @param indexName
+	 * @return completed once the refresh is done
+	 */
+	EsFuture<Void> refresh(String indexName);
+
+	/**
+	 * @return the synchronous repository sharing the same client and settings
+	 */
+	ElasticsearchRepository getRepository();
+}
@@ -0,0 +1,132 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+/**
+ * 记录已加载文档的快照(按id,LRU淘汰),更新时计算字段级别的差异,只发送变化的字段.
+ * 嵌套对象逐层比较,数组整体比较;被删除的字段以null发送
+ * 
+ * @author Dylan
+ */
+public class ChangeTracker {
+
+	private final Map<String, Map<String, Object>> snapshots;
+
+	/**
+	 * @param capacity maximum number of snapshots kept, the least recently used are evicted first
+	 */
+	public ChangeTracker(final int capacity) {
+		this.snapshots = Collections.synchronizedMap(new LinkedHashMap<String, Map<String, Object>>(16, 0.75f, true) {
+
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Map<String, Object>> eldest) {
+				return size() > capacity;
+			}
+		});
+	}
+
+	/**
+	 * remember the source as the state of the document known to the server
+	 * 
+	 * @param id
+	 * @param source
+	 */
+	public void snapshot(String id, BytesReference source) {
+		snapshot(id, toMap(source));
+	}
+
+	public void snapshot(String id, Map<String, Object> source) {
+		if (null != id) {
+			snapshots.put(id, source);
+		}
+	}
+
+	public void forget(String id) {
+		if (null != id) {
+			snapshots.remove(id);
+		}
+	}
+
+	public void clear() {
+		snapshots.clear();
+	}
+
+	/**
+	 * @param id
+	 * @param current
+	 * @return changed paths as a partial document, empty if nothing changed, null if there is no snapshot of the id
+	 */
+	public Map<String, Object> diff(String id, Map<String, Object> current) {
+		Map<String, Object> snapshot = null == id ? null : snapshots.get(id);
+		if (null == snapshot) {
+			return null;
+		}
+		return diff(snapshot, current);
+	}
+
+	public static Map<String, Object> toMap(BytesReference source) {
+		return XContentHelper.convertToMap(source, true).v2();
+	}
+
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> diff(Map<String, Object> before, Map<String, Object> after) {
+		Map<String, Object> changes = new LinkedHashMap<String, Object>();
+		for (Map.Entry<String, Object> entry : after.entrySet()) {
+			String key = entry.getKey();
+			Object value = entry.getValue();
+			if (!before.containsKey(key)) {
+				changes.put(key, value);
+				continue;
+			}
+			Object old = before.get(key);
+			if (value instanceof Map && old instanceof Map) {
+				Map<String, Object> nested = diff((Map<String, Object>) old, (Map<String, Object>) value);
+				if (!nested.isEmpty()) {
+					changes.put(key, nested);
+				}
+			} else if (!equal(old, value)) {
+				changes.put(key, value);
+			}
+		}
+		for (String key : before.keySet()) {
+			if (!after.containsKey(key) && null != before.get(key)) {
+				changes.put(key, null);
+			}
+		}
+		return changes;
+	}
+
+	private static boolean equal(Object a, Object b) {
+		if (a == b) {
+			return true;
+		}
+		if (null == a || null == b) {
+			return false;
+		}
+		if (a instanceof Number && b instanceof Number && !(a instanceof Double || a instanceof Float) && !(b instanceof Double || b instanceof Float)) {
+			return ((Number) a).longValue() == ((Number) b).longValue();
+		}
+		if (a instanceof List && b instanceof List) {
+			List<?> left = (List<?>) a;
+			List<?> right = (List<?>) b;
+			if (left.size() != right.size()) {
+				return false;
+			}
+			for (int i = 0; i < left.size(); i++) {
+				if (!equal(left.get(i), right.get(i))) {
+					return false;
+				}
+			}
+			return true;
+		}
+		return a.equals(b);
+	}
+}
@@ -0,0 +1,15 @@
+package com.weasel.elasticsearch.core;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * 需要释放服务端资源(例如scroll上下文)的迭代器.迭代到末尾时自动释放,提前结束迭代必须调用{@link #close()}
+ * 
+ * @author Dylan
+ */
+public interface CloseableIterator<T> extends Iterator<T>, Closeable {
+
+	@Override
+	void close();
+}
@@ -0,0 +1,27 @@
+package com.weasel.elasticsearch.core;
+
+import com.weasel.core.EsPage;
+
+/**
+ * 游标分页的结果.把{@link #getNextCursor()}通过NativeSearchQueryBuilder.withCursor传给下一次查询即可取下一页,
+ * 没有下一页时为null.totalCount是查询时剩余的hit数加上之前已经返回的hit数
+ * 
+ * @author Dylan
+ */
+public class CursorPage<T> extends EsPage<T> {
+
+	private String nextCursor;
+
+	public String getNextCursor() {
+		return nextCursor;
+	}
+
+	public CursorPage<T> setNextCursor(String nextCursor) {
+		this.nextCursor = nextCursor;
+		return this;
+	}
+
+	public boolean hasNext() {
+		return null != nextCursor;
+	}
+}
@@ -15,41 +15,78 @@
  */
 package com.weasel.elasticsearch.core;
 
+import static org.apache.commons.collections.CollectionUtils.isEmpty;
 import static org.apache.commons.collections.CollectionUtils.isNotEmpty;
 import static org.apache.commons.lang.StringUtils.isBlank;
 import static org.apache.commons.lang.StringUtils.isNotBlank;
 import static org.elasticsearch.action.search.SearchType.DFS_QUERY_THEN_FETCH;
+import static org.elasticsearch.action.search.SearchType.QUERY_THEN_FETCH;
+import static org.elasticsearch.action.search.SearchType.SCAN;
 import static org.elasticsearch.client.Requests.indicesExistsRequest;
 import static org.elasticsearch.client.Requests.refreshRequest;
 import static org.elasticsearch.index.VersionType.EXTERNAL;
+import static org.elasticsearch.index.query.QueryBuilders.filteredQuery;
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.lang.StringUtils;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.ActionRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.mapping.delete.DeleteMappingRequest;
 import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkRequestBuilder;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.count.CountRequestBuilder;
+import org.elasticsearch.action.delete.DeleteRequest;
 import org.elasticsearch.action.get.GetResponse;
+import org.elasticsearch.action.get.MultiGetItemResponse;
+import org.elasticsearch.action.get.MultiGetRequest;
+import org.elasticsearch.action.get.MultiGetResponse;
+import org.elasticsearch.action.index.IndexRequest;
 import org.elasticsearch.action.index.IndexRequestBuilder;
+import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.action.mlt.MoreLikeThisRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchRequestBuilder;
+import org.elasticsearch.action.search.MultiSearchResponse;
 import org.elasticsearch.action.search.SearchRequestBuilder;
 import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.action.suggest.SuggestRequestBuilder;
 import org.elasticsearch.action.suggest.SuggestResponse;
+import org.elasticsearch.action.update.UpdateRequest;
 import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
 import org.elasticsearch.client.Requests;
 import org.elasticsearch.cluster.metadata.MappingMetaData;
+import org.elasticsearch.cluster.metadata.MetaData;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.collect.MapBuilder;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.query.AndFilterBuilder;
+import org.elasticsearch.index.query.FilterBuilder;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.OrFilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeFilterBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchHits;
 import org.elasticsearch.search.facet.Facet;
@@ -61,6 +98,7 @@ import org.elasticsearch.search.highlight.HighlightField;
 import org.elasticsearch.search.sort.SortBuilder;
 import org.elasticsearch.search.sort.SortOrder;
 import org.elasticsearch.search.suggest.SuggestBuilder.SuggestionBuilder;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Repository;
 import org.springframework.util.Assert;
@@ -69,6 +107,19 @@ import com.weasel.core.EsPage;
 import com.weasel.core.Page;
 import com.weasel.core.annotation.Document;
 import com.weasel.core.helper.GodHands;
+import com.weasel.elasticsearch.annotation.DocumentSearchType;
+import com.weasel.elasticsearch.core.bulk.BulkDispatchMode;
+import com.weasel.elasticsearch.core.cache.NearCache;
+import com.weasel.elasticsearch.core.bulk.BulkItemResult;
+import com.weasel.elasticsearch.core.bulk.BulkPartitionStats;
+import com.weasel.elasticsearch.core.bulk.BulkProcessorBuilder;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.bulk.BulkRetryPolicy;
+import com.weasel.elasticsearch.core.bulk.PartitionedBulkResult;
+import com.weasel.elasticsearch.core.bulk.ShardPartitioner;
+import com.weasel.elasticsearch.core.codec.EntityCodec;
+import com.weasel.elasticsearch.core.codec.EntityCodecRegistry;
+import com.weasel.elasticsearch.core.highlight.HighlightBinder;
 import com.weasel.elasticsearch.core.query.DeleteQuery;
 import com.weasel.elasticsearch.core.query.GetQuery;
 import com.weasel.elasticsearch.core.query.IndexQuery;
@@ -78,7 +129,6 @@ import com.weasel.elasticsearch.core.query.SearchQuery;
 import com.weasel.elasticsearch.core.query.SuggestQuery;
 import com.weasel.elasticsearch.core.query.UpdateQuery;
 import com.weasel.elasticsearch.exception.ElasticsearchException;
-import com.weasel.helper.JsonHelper;
 
 /**
  * ElasticsearchTemplate
@@ -89,11 +139,27 @@ import com.weasel.helper.JsonHelper;
  * @author Dylan
  */
 @Repository
-public class ElasticsearchOperations implements ElasticsearchRepository {
+public class ElasticsearchOperations implements ElasticsearchRepository, DisposableBean {
+
+	/**
+	 * tiebreaker of cursor pagination, unique per index
+	 */
+	private static final String UID_FIELD = "_uid";
 
 	@Autowired
 	protected Client es;
 
+	private EntityCodecRegistry codecRegistry = new EntityCodecRegistry();
+	private HighlightBinder highlightBinder = new HighlightBinder();
+	private BulkRetryPolicy bulkRetryPolicy;
+	private long refreshWindow = 1000;
+	private volatile RefreshCoalescer refreshCoalescer;
+	private SearchType defaultSearchType = DFS_QUERY_THEN_FETCH;
+	private volatile ExecutorService parseExecutor;
+	private int parallelParseThreshold = 1000;
+	private int parseChunkSize = 250;
+	private final ConcurrentMap<String, NearCache> nearCaches = new ConcurrentHashMap<String, NearCache>();
+
 	public Client getEs() {
 		return es;
 	}
@@ -102,6 +168,171 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		this.es = es;
 	}
 
+	public EntityCodecRegistry getCodecRegistry() {
+		return codecRegistry;
+	}
+
+	public void setCodecRegistry(EntityCodecRegistry codecRegistry) {
+		this.codecRegistry = codecRegistry;
+	}
+
+	/**
+	 * 为实体类型注册序列化器,见{@link EntityCodec}
+	 * 
+	 * @param clazz
+	 * @param codec
+	 */
+	public void registerCodec(Class<?> clazz, EntityCodec codec) {
+		codecRegistry.register(clazz, codec);
+	}
+
+	public HighlightBinder getHighlightBinder() {
+		return highlightBinder;
+	}
+
+	public void setHighlightBinder(HighlightBinder highlightBinder) {
+		this.highlightBinder = highlightBinder;
+	}
+
+	/**
+	 * 设置后{@link #bulkIndex(List)}会按该策略重试失败的文档,重试后仍失败才抛出异常
+	 * 
+	 * @param bulkRetryPolicy
+	 */
+	public void setBulkRetryPolicy(BulkRetryPolicy bulkRetryPolicy) {
+		this.bulkRetryPolicy = bulkRetryPolicy;
+	}
+
+	/**
+	 * 合并刷新的窗口期(毫秒),见{@link RefreshPolicy#COALESCED}.使用中修改时,之后的刷新请求按新的窗口期合并
+	 * 
+	 * @param refreshWindow
+	 */
+	public synchronized void setRefreshWindow(long refreshWindow) {
+		this.refreshWindow = refreshWindow;
+		RefreshCoalescer coalescer = refreshCoalescer;
+		if (null != coalescer) {
+			// the next scheduled refresh creates a coalescer with the new window, the scheduled ones still run
+			refreshCoalescer = null;
+			coalescer.shutdown();
+		}
+	}
+
+	/**
+	 * 容器关闭时停止合并刷新的线程,已排期的刷新仍会执行,之后的刷新请求直接执行
+	 */
+	@Override
+	public synchronized void destroy() {
+		RefreshCoalescer coalescer = refreshCoalescer;
+		if (null != coalescer) {
+			coalescer.shutdown();
+		}
+	}
+
+	/**
+	 * @param defaultSearchType used when neither the query nor the entity ({@link DocumentSearchType}) sets one
+	 */
+	public void setDefaultSearchType(SearchType defaultSearchType) {
+		Assert.notNull(defaultSearchType, "defaultSearchType must not be null");
+		this.defaultSearchType = defaultSearchType;
+	}
+
+	/**
+	 * 开启并行反序列化:hits数不少于threshold的结果被切成chunkSize大小的块,在executor中反序列化,结果顺序不变.
+	 * 高亮仍在调用线程中处理.executor由调用方管理,传入null关闭
+	 * 
+	 * @param executor
+	 * @param threshold
+	 * @param chunkSize
+	 */
+	public void setParallelParsing(ExecutorService executor, int threshold, int chunkSize) {
+		Assert.isTrue(threshold > 0, "threshold must be positive");
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		this.parallelParseThreshold = threshold;
+		this.parseChunkSize = chunkSize;
+		this.parseExecutor = executor;
+	}
+
+	@Override
+	public void setNearCache(Class<?> clazz, NearCache nearCache) {
+		String key = nearCacheKey(getIndexName(clazz), getType(clazz));
+		if (null == nearCache) {
+			nearCaches.remove(key);
+		} else {
+			nearCaches.put(key, nearCache);
+		}
+	}
+
+	@Override
+	public NearCache getNearCache(Class<?> clazz) {
+		return nearCaches.get(nearCacheKey(getIndexName(clazz), getType(clazz)));
+	}
+
+	@Override
+	public void evict(String indexName, String type, String id) {
+		evict(indexName, type, id, -1);
+	}
+
+	/**
+	 * @param indexName
+	 * @param type
+	 * @param id
+	 * @param version the version written, reads of an older version are not cached any more; -1 if it is unknown
+	 */
+	void evict(String indexName, String type, String id, long version) {
+		if (nearCaches.isEmpty() || null == id) {
+			return;
+		}
+		NearCache nearCache = nearCaches.get(nearCacheKey(indexName, type));
+		if (null != nearCache) {
+			nearCache.invalidate(id, version);
+		}
+	}
+
+	/**
+	 * evict the documents of a completed bulk with the versions they were written with
+	 * 
+	 * @param response
+	 */
+	void evict(BulkResponse response) {
+		if (nearCaches.isEmpty()) {
+			return;
+		}
+		for (BulkItemResponse item : response.getItems()) {
+			evict(item.getIndex(), item.getType(), item.getId(), item.isFailed() ? -1 : item.getVersion());
+		}
+	}
+
+	@Override
+	public void evict(BulkRequest request) {
+		if (nearCaches.isEmpty()) {
+			return;
+		}
+		for (ActionRequest<?> action : request.requests()) {
+			if (action instanceof IndexRequest) {
+				IndexRequest index = (IndexRequest) action;
+				evict(index.index(), index.type(), index.id());
+			} else if (action instanceof UpdateRequest) {
+				UpdateRequest update = (UpdateRequest) action;
+				evict(update.index(), update.type(), update.id());
+			} else if (action instanceof DeleteRequest) {
+				DeleteRequest delete = (DeleteRequest) action;
+				evict(delete.index(), delete.type(), delete.id());
+			}
+		}
+	}
+
+	private void evictAll(String indexName, String type) {
+		NearCache nearCache = nearCaches.isEmpty() ? null : nearCaches.get(nearCacheKey(indexName, type));
+		if (null != nearCache) {
+			nearCache.clear();
+		}
+	}
+
+	private static String nearCacheKey(String indexName, String type) {
+		return indexName + '/' + type;
+	}
+
 	@Override
 	public <T> boolean createIndex(Class<T> clazz) {
 		return createIndexIfNotCreated(clazz);
@@ -109,22 +340,116 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 
 	@Override
 	public <T> T queryForObject(GetQuery query, Class<T> clazz) {
+		NearCache nearCache = nearCaches.isEmpty() ? null : getNearCache(clazz);
+		long stamp = 0;
+		if (null != nearCache) {
+			byte[] cached = nearCache.get(query.getId());
+			if (null != cached) {
+				return codecRegistry.decode(new BytesArray(cached), clazz);
+			}
+			stamp = nearCache.stamp();
+		}
 		GetResponse response = es.prepareGet(getIndexName(clazz), getType(clazz), query.getId()).execute().actionGet();
-		if (StringUtils.isBlank(response.getSourceAsString()))
+		if (response.isSourceEmpty())
 			return null;
-		return JsonHelper.fromJsonString(response.getSourceAsString(), clazz);
+		if (null != nearCache) {
+			nearCache.put(query.getId(), response.getVersion(), response.getSourceAsBytes(), stamp);
+		}
+		return codecRegistry.decode(response.getSourceAsBytesRef(), clazz);
+	}
+
+	@Override
+	public <T> MultiGetResult<T> findAll(Iterable<String> ids, Class<T> clazz, int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		String indexName = getIndexName(clazz);
+		String type = getType(clazz);
+		List<MultiGetRequest> chunks = new ArrayList<MultiGetRequest>();
+		List<List<String>> chunkIds = new ArrayList<List<String>>();
+		MultiGetRequest chunk = null;
+		int total = 0;
+		for (String id : ids) {
+			if (null == chunk || chunkIds.get(chunkIds.size() - 1).size() >= chunkSize) {
+				chunk = new MultiGetRequest();
+				chunks.add(chunk);
+				chunkIds.add(new ArrayList<String>(chunkSize));
+			}
+			chunk.add(indexName, type, id);
+			chunkIds.get(chunkIds.size() - 1).add(id);
+			total++;
+		}
+
+		final MultiGetItemResponse[][] responses = new MultiGetItemResponse[chunks.size()][];
+		final Throwable[] failures = new Throwable[chunks.size()];
+		final CountDownLatch latch = new CountDownLatch(chunks.size());
+		for (int i = 0; i < chunks.size(); i++) {
+			final int slot = i;
+			es.multiGet(chunks.get(i), new ActionListener<MultiGetResponse>() {
+				@Override
+				public void onResponse(MultiGetResponse response) {
+					responses[slot] = response.getResponses();
+					latch.countDown();
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					failures[slot] = e;
+					latch.countDown();
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("interrupted while waiting for the multi get", e);
+		}
+
+		MultiGetResult<T> result = new MultiGetResult<T>(total);
+		for (int i = 0; i < chunks.size(); i++) {
+			if (null != failures[i]) {
+				for (String id : chunkIds.get(i)) {
+					result.addFailure(id, String.valueOf(failures[i]));
+				}
+				continue;
+			}
+			for (MultiGetItemResponse item : responses[i]) {
+				if (item.isFailed()) {
+					result.addFailure(item.getId(), item.getFailure().getMessage());
+				} else if (!item.getResponse().isExists() || item.getResponse().isSourceEmpty()) {
+					result.addMissing(item.getId());
+				} else {
+					result.addResult(codecRegistry.decode(item.getResponse().getSourceAsBytesRef(), clazz));
+				}
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public <T> MultiGetResult<T> findAll(Iterable<String> ids, Class<T> clazz) {
+		return findAll(ids, clazz, DEFAULT_MULTI_GET_CHUNK_SIZE);
 	}
 
 	@Override
 	public <T> EsPage<T> queryForPage(SearchQuery query, Class<T> clazz) {
 		SearchResponse response = doSearch(prepareSearch(query, clazz), query);
-		return parseResult(response, clazz, query.getPageable(),null);
+		return parsePage(response, clazz, query, null);
 	}
 	
 	@Override
 	public <T> EsPage<T> queryForPage(SearchQuery query, Class<T> clazz,HighlightFieldResultParser<T> parser) {
 		SearchResponse response = doSearch(prepareSearch(query, clazz), query);
-		return parseResult(response, clazz, query.getPageable(),parser);
+		return parsePage(response, clazz, query, parser);
+	}
+
+	@Override
+	public <T, P> EsPage<P> queryForPage(SearchQuery query, Class<T> clazz, Class<P> projection) {
+		SearchResponse response = doSearch(prepareProjection(query, clazz, projection), query);
+		return parsePage(response, projection, query, null);
+	}
+
+	<T, P> SearchRequestBuilder prepareProjection(SearchQuery query, Class<T> clazz, Class<P> projection) {
+		return prepareSearch(query, clazz).setNoFields().addPartialField(Projections.PROJECTION_FIELD, Projections.includes(projection), null);
 	}
 
 	@Override
@@ -156,44 +481,174 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		return extractIds(response);
 	}
 
+	@Override
+	public <T> CloseableIterator<T> iterate(SearchQuery query, Class<T> clazz, int batchSize, long keepAlive) {
+		Assert.isTrue(batchSize > 0, "batchSize must be positive");
+		TimeValue scrollKeepAlive = TimeValue.timeValueMillis(keepAlive);
+		SearchRequestBuilder request = prepareScroll(query, clazz, batchSize, scrollKeepAlive);
+		return new ScrollIterator<T>(es, codecRegistry, request.execute().actionGet(), scrollKeepAlive, clazz);
+	}
+
+	@Override
+	public <T> EsPage<T> queryForAll(SearchQuery query, Class<T> clazz) {
+		TimeValue keepAlive = TimeValue.timeValueMillis(DEFAULT_SCROLL_KEEP_ALIVE);
+		SearchRequestBuilder request = prepareQuery(prepareSearch(query, clazz), query).setFrom(0).setSize(DEFAULT_SCROLL_SIZE).setScroll(keepAlive);
+		SearchResponse response = request.execute().actionGet();
+		ScrollIterator<T> iterator = new ScrollIterator<T>(es, codecRegistry, response, keepAlive, clazz);
+		// sized by what has arrived, not by the total: a broad query must not allocate millions of slots up front
+		List<T> results = new ArrayList<T>((int) Math.min(iterator.getTotalHits(), DEFAULT_SCROLL_SIZE));
+		try {
+			while (iterator.hasNext()) {
+				results.add(iterator.next());
+			}
+		} finally {
+			iterator.close();
+		}
+		EsPage<T> page = new EsPage<T>();
+		page.setTotalCount((int) iterator.getTotalHits());
+		page.setResult(results);
+		page.setFacets(parseFacet(response.getFacets()));
+		return page;
+	}
+
+	@Override
+	public <T> CloseableIterator<T> iterate(SearchQuery query, Class<T> clazz) {
+		return iterate(query, clazz, DEFAULT_SCROLL_SIZE, DEFAULT_SCROLL_KEEP_ALIVE);
+	}
+
+	@Override
+	public <T> long scan(SearchQuery query, Class<T> clazz, int parallelism, ScanConsumer<? super T> consumer) {
+		Assert.notNull(consumer, "consumer must not be null");
+		return prepareSlicedScan(query, clazz, parallelism).forEach(consumer);
+	}
+
+	@Override
+	public <T> CloseableIterator<T> parallelIterate(SearchQuery query, Class<T> clazz, int parallelism) {
+		return prepareSlicedScan(query, clazz, parallelism).iterator(DEFAULT_SCROLL_SIZE);
+	}
+
+	@Override
+	public <T> MultiSearchResult<T> queryForPages(List<SearchQuery> queries, Class<T> clazz) {
+		MultiSearchResult<T> result = new MultiSearchResult<T>(queries.size());
+		if (queries.isEmpty()) {
+			return result;
+		}
+		MultiSearchRequestBuilder request = es.prepareMultiSearch();
+		for (SearchQuery query : queries) {
+			request.add(prepareQuery(prepareSearch(query, clazz), query));
+		}
+		MultiSearchResponse.Item[] items = request.execute().actionGet().getResponses();
+		for (int i = 0; i < items.length; i++) {
+			if (items[i].isFailure()) {
+				result.addFailure(items[i].getFailureMessage());
+			} else {
+				result.addPage(parseResult(items[i].getResponse(), clazz, queries.get(i).getPageable(), null));
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public <T> CursorPage<T> queryForCursorPage(SearchQuery query, Class<T> clazz) {
+		Assert.isTrue(isEmpty(query.getElasticsearchSort()), "cursor pagination only supports the sorts of the page");
+		Assert.notNull(query.getPageable(), "cursor pagination needs a pageable for the page size");
+		int pageSize = query.getPageable().getPageSize();
+		boolean pointInTime = query.getPointInTimeKeepAlive() > 0;
+		TimeValue keepAlive = TimeValue.timeValueMillis(query.getPointInTimeKeepAlive());
+		SearchCursor cursor = null == query.getCursor() ? null : SearchCursor.decode(query.getCursor());
+		long offset = null == cursor ? 0 : cursor.getOffset();
+
+		SearchResponse response;
+		if (null != cursor && null != cursor.getScrollId()) {
+			response = es.prepareSearchScroll(cursor.getScrollId()).setScroll(keepAlive).execute().actionGet();
+		} else {
+			SearchRequestBuilder request = prepareSearch(query, clazz).setFrom(0).setSize(pageSize).addSort(UID_FIELD, SortOrder.ASC);
+			QueryBuilder queryBuilder = null == query.getQuery() ? matchAllQuery() : query.getQuery();
+			if (null != cursor) {
+				queryBuilder = filteredQuery(queryBuilder, seekFilter(query.getPageable(), cursor.getSortValues()));
+			}
+			if (pointInTime) {
+				request.setSearchType(QUERY_THEN_FETCH).setScroll(keepAlive);
+			}
+			if (null != query.getFilter()) {
+				request.setFilter(query.getFilter());
+			}
+			if (null != query.getHighlightFields()) {
+				for (HighlightBuilder.Field highlightField : query.getHighlightFields()) {
+					request.addHighlightedField(highlightField);
+				}
+			}
+			response = request.setQuery(queryBuilder).execute().actionGet();
+		}
+
+		CursorPage<T> page = parseResult(new CursorPage<T>(), response, clazz, query.getPageable(), null);
+		SearchHit[] hits = response.getHits().getHits();
+		long returned = offset + hits.length;
+		page.setTotalCount((int) (pointInTime ? response.getHits().totalHits() : offset + response.getHits().totalHits()));
+		page.setCurrentPage((int) (offset / pageSize) + 1);
+		if (hits.length < pageSize || returned >= page.getTotalCount()) {
+			if (pointInTime) {
+				es.prepareClearScroll().addScrollId(response.getScrollId()).execute().actionGet();
+			}
+		} else if (pointInTime) {
+			page.setNextCursor(SearchCursor.scroll(response.getScrollId(), returned).encode());
+		} else {
+			SearchHit last = hits[hits.length - 1];
+			for (Object sortValue : last.getSortValues()) {
+				if (null == sortValue) {
+					throw new ElasticsearchException("document [" + last.getId() + "] has no value for a sort field of the page, "
+							+ "cursor pagination needs the sort fields on every document or a point in time keep alive");
+				}
+			}
+			page.setNextCursor(SearchCursor.after(last.getSortValues(), returned).encode());
+		}
+		return page;
+	}
+
 	@Override
 	public <T> long count(SearchQuery query, Class<T> clazz) {
+		return prepareCount(query, clazz).execute().actionGet().getCount();
+	}
+
+	<T> CountRequestBuilder prepareCount(SearchQuery query, Class<T> clazz) {
 		CountRequestBuilder countRequestBuilder = es.prepareCount(getIndexName(clazz)).setTypes(getType(clazz));
 		if (query.getQuery() != null) {
 			countRequestBuilder.setQuery(query.getQuery());
 		}
-		return countRequestBuilder.execute().actionGet().getCount();
+		return countRequestBuilder;
 	}
 
 	@Override
 	public String index(IndexQuery query) {
-		return prepareIndex(query).execute().actionGet().getId();
+		IndexResponse response = prepareIndex(query).execute().actionGet();
+		// a read racing with the write may have cached the previous version
+		evict(response.getIndex(), response.getType(), response.getId(), response.getVersion());
+		return response.getId();
 	}
 
 	@Override
 	public UpdateResponse update(UpdateQuery query) {
-		String indexName = isNotBlank(query.getIndexName()) ? query.getIndexName() : getIndexName(query.getClazz());
-		String type = isNotBlank(query.getType()) ? query.getType() : getType(query.getClazz());
-		Assert.notNull(indexName, "No index defined for Query");
-		Assert.notNull(type, "No type define for Query");
-		Assert.notNull(query.getId(), "No Id define for Query");
-		Assert.notNull(query.getIndexRequest(), "No IndexRequest define for Query");
-		UpdateRequestBuilder updateRequestBuilder = es.prepareUpdate(indexName, type, query.getId());
-		if (query.DoUpsert()) {
-			updateRequestBuilder.setDocAsUpsert(true).setUpsert(query.getIndexRequest()).setDoc(query.getIndexRequest());
-		} else {
-			updateRequestBuilder.setDoc(query.getIndexRequest());
-		}
-		return updateRequestBuilder.execute().actionGet();
+		UpdateResponse response = prepareUpdate(query).execute().actionGet();
+		evict(response.getIndex(), response.getType(), response.getId(), response.getVersion());
+		return response;
 	}
 
 	@Override
 	public void bulkIndex(List<IndexQuery> queries) {
+		if (null != bulkRetryPolicy) {
+			BulkResult result = bulkIndex(queries, bulkRetryPolicy);
+			if (result.hasFailures()) {
+				Map<String, String> failedDocuments = result.getFailedDocuments();
+				throw new ElasticsearchException("Bulk indexing has failures. Use ElasticsearchException.getFailedDocuments() for detailed messages ["
+						+ failedDocuments + "]", failedDocuments);
+			}
+			return;
+		}
 		BulkRequestBuilder bulkRequest = es.prepareBulk();
 		for (IndexQuery query : queries) {
 			bulkRequest.add(prepareIndex(query));
 		}
-		BulkResponse bulkResponse = bulkRequest.execute().actionGet();
+		BulkResponse bulkResponse = executeBulk(bulkRequest);
 		if (bulkResponse.hasFailures()) {
 			Map<String, String> failedDocuments = new HashMap<String, String>();
 			for (BulkItemResponse item : bulkResponse.getItems()) {
@@ -204,9 +659,195 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		}
 	}
 
+	@Override
+	public BulkResult bulkUpdate(List<UpdateQuery> queries, int chunkSize) {
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		BulkResult result = new BulkResult();
+		BulkRequestBuilder bulkRequest = es.prepareBulk();
+		for (UpdateQuery query : queries) {
+			bulkRequest.add(prepareUpdate(query));
+			if (bulkRequest.numberOfActions() >= chunkSize) {
+				result.add(executeBulk(bulkRequest));
+				bulkRequest = es.prepareBulk();
+			}
+		}
+		if (bulkRequest.numberOfActions() > 0) {
+			result.add(executeBulk(bulkRequest));
+		}
+		return result;
+	}
+
+	@Override
+	public BulkResult bulkUpdate(List<UpdateQuery> queries) {
+		return bulkUpdate(queries, DEFAULT_BULK_CHUNK_SIZE);
+	}
+
+	@Override
+	public BulkResult bulkIndex(List<IndexQuery> queries, BulkRetryPolicy retryPolicy) {
+		Assert.notNull(retryPolicy, "retryPolicy must not be null");
+		// by submit position, documents which succeed on a retry keep their place
+		BulkItemResult[] results = new BulkItemResult[queries.size()];
+		List<IndexQuery> pending = queries;
+		List<Integer> positions = new ArrayList<Integer>(queries.size());
+		for (int i = 0; i < queries.size(); i++) {
+			positions.add(i);
+		}
+		for (int attempt = 0; !pending.isEmpty(); attempt++) {
+			boolean canRetry = attempt < retryPolicy.getMaxRetries();
+			List<IndexQuery> retries = new ArrayList<IndexQuery>();
+			List<Integer> retryPositions = new ArrayList<Integer>();
+			List<IndexRequest> requests = new ArrayList<IndexRequest>(pending.size());
+			BulkRequestBuilder bulkRequest = es.prepareBulk();
+			for (IndexQuery query : pending) {
+				IndexRequest request = prepareIndex(query).request();
+				requests.add(request);
+				bulkRequest.add(request);
+			}
+			BulkResponse response = null;
+			try {
+				response = executeBulk(bulkRequest);
+			} catch (Exception e) {
+				// part of the bulk may have been written
+				evict(bulkRequest.request());
+				if (canRetry && retryPolicy.isRetryable(e)) {
+					retries.addAll(pending);
+					retryPositions.addAll(positions);
+				} else {
+					for (int i = 0; i < pending.size(); i++) {
+						IndexRequest request = requests.get(i);
+						results[positions.get(i)] = deadLetter(retryPolicy, pending.get(i), request.index(), request.type(), String.valueOf(e));
+					}
+				}
+			}
+			if (null != response) {
+				for (BulkItemResponse item : response.getItems()) {
+					IndexQuery query = pending.get(item.getItemId());
+					int position = positions.get(item.getItemId());
+					if (!item.isFailed()) {
+						results[position] = BulkItemResult.of(item);
+					} else if (canRetry && retryPolicy.isRetryable(item.getFailureMessage())) {
+						retries.add(query);
+						retryPositions.add(position);
+					} else {
+						results[position] = deadLetter(retryPolicy, query, item.getIndex(), item.getType(), item.getFailureMessage());
+					}
+				}
+			}
+			if (!retries.isEmpty()) {
+				try {
+					Thread.sleep(retryPolicy.backoff(attempt));
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new ElasticsearchException("interrupted while waiting to retry [" + retries.size() + "] failed documents", e);
+				}
+			}
+			pending = retries;
+			positions = retryPositions;
+		}
+		BulkResult result = new BulkResult();
+		for (BulkItemResult item : results) {
+			result.add(item);
+		}
+		return result;
+	}
+
+	private BulkItemResult deadLetter(BulkRetryPolicy retryPolicy, IndexQuery query, String index, String type, String failureMessage) {
+		if (null != retryPolicy.getDeadLetterHandler()) {
+			retryPolicy.getDeadLetterHandler().handle(query, index, type, failureMessage);
+		}
+		return new BulkItemResult(index, type, query.getId(), -1, failureMessage);
+	}
+
+	@Override
+	public PartitionedBulkResult bulkIndex(List<IndexQuery> queries, BulkDispatchMode mode) {
+		ShardPartitioner partitioner = BulkDispatchMode.SINGLE == mode ? null : new ShardPartitioner(es.admin().cluster().prepareState().execute()
+				.actionGet().getState(), mode);
+		Map<String, BulkRequest> partitions = new LinkedHashMap<String, BulkRequest>();
+		// submit position of every item of a partition
+		Map<String, List<Integer>> partitionPositions = new HashMap<String, List<Integer>>();
+		int position = 0;
+		for (IndexQuery query : queries) {
+			IndexRequest request = prepareIndex(query).request();
+			String partition = null == partitioner ? "*" : partitioner.partition(request.index(), request.id(), request.routing());
+			BulkRequest bulkRequest = partitions.get(partition);
+			if (null == bulkRequest) {
+				bulkRequest = new BulkRequest();
+				partitions.put(partition, bulkRequest);
+				partitionPositions.put(partition, new ArrayList<Integer>());
+			}
+			bulkRequest.add(request);
+			partitionPositions.get(partition).add(position++);
+		}
+
+		final PartitionedBulkResult result = new PartitionedBulkResult();
+		final BulkItemResult[] results = new BulkItemResult[position];
+		final CountDownLatch latch = new CountDownLatch(partitions.size());
+		for (Map.Entry<String, BulkRequest> entry : partitions.entrySet()) {
+			final String partition = entry.getKey();
+			final BulkRequest request = entry.getValue();
+			final List<Integer> positions = partitionPositions.get(partition);
+			final long start = System.currentTimeMillis();
+			es.bulk(request, new ActionListener<BulkResponse>() {
+				@Override
+				public void onResponse(BulkResponse response) {
+					try {
+						evict(response);
+						int failed = 0;
+						for (BulkItemResponse item : response.getItems()) {
+							if (item.isFailed())
+								failed++;
+						}
+						synchronized (result) {
+							for (BulkItemResponse item : response.getItems()) {
+								results[positions.get(item.getItemId())] = BulkItemResult.of(item);
+							}
+							result.addTookInMillis(response.getTookInMillis());
+							result.addPartition(new BulkPartitionStats(partition, request.numberOfActions(), request.estimatedSizeInBytes(), System
+									.currentTimeMillis() - start, failed, null));
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					try {
+						evict(request);
+						synchronized (result) {
+							for (int i = 0; i < request.requests().size(); i++) {
+								IndexRequest failed = (IndexRequest) request.requests().get(i);
+								results[positions.get(i)] = new BulkItemResult(failed.index(), failed.type(), failed.id(), -1, String.valueOf(e));
+							}
+							result.addPartition(new BulkPartitionStats(partition, request.numberOfActions(), request.estimatedSizeInBytes(), System
+									.currentTimeMillis() - start, request.numberOfActions(), String.valueOf(e)));
+						}
+					} finally {
+						latch.countDown();
+					}
+				}
+			});
+		}
+		try {
+			latch.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("interrupted while waiting for the partitioned bulk", e);
+		}
+		synchronized (result) {
+			for (BulkItemResult item : results) {
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
 	@Override
 	public String delete(String indexName, String type, String id) {
-		return es.prepareDelete(indexName, type, id).execute().actionGet().getId();
+		evict(indexName, type, id);
+		String deleted = es.prepareDelete(indexName, type, id).execute().actionGet().getId();
+		evict(indexName, type, id);
+		return deleted;
 	}
 
 	@Override
@@ -214,8 +855,45 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		return delete(getIndexName(clazz), getType(clazz), id);
 	}
 
+	@Override
+	public BulkResult bulkDelete(String indexName, String type, Iterable<String> ids, int chunkSize) {
+		Assert.notNull(indexName, "No index defined for bulk delete");
+		Assert.notNull(type, "No type define for bulk delete");
+		Assert.isTrue(chunkSize > 0, "chunkSize must be positive");
+		BulkResult result = new BulkResult();
+		BulkRequestBuilder bulkRequest = es.prepareBulk();
+		for (String id : ids) {
+			evict(indexName, type, id);
+			bulkRequest.add(es.prepareDelete(indexName, type, id));
+			if (bulkRequest.numberOfActions() >= chunkSize) {
+				result.add(executeBulk(bulkRequest));
+				bulkRequest = es.prepareBulk();
+			}
+		}
+		if (bulkRequest.numberOfActions() > 0) {
+			result.add(executeBulk(bulkRequest));
+		}
+		return result;
+	}
+
+	/**
+	 * execute the bulk and evict its documents again, a read racing with the bulk may have cached the previous
+	 * versions
+	 */
+	private BulkResponse executeBulk(BulkRequestBuilder bulkRequest) {
+		BulkResponse response = bulkRequest.execute().actionGet();
+		evict(response);
+		return response;
+	}
+
+	@Override
+	public <T> BulkResult bulkDelete(Class<T> clazz, Iterable<String> ids) {
+		return bulkDelete(getIndexName(clazz), getType(clazz), ids, DEFAULT_BULK_CHUNK_SIZE);
+	}
+
 	@Override
 	public <T> void delete(DeleteQuery query, Class<T> clazz) {
+		evictAll(getIndexName(clazz), getType(clazz));
 		es.prepareDeleteByQuery(getIndexName(clazz)).setTypes(getType(clazz)).setQuery(query.getQuery()).execute().actionGet();
 	}
 
@@ -223,12 +901,14 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 	public void delete(DeleteQuery query) {
 		Assert.notNull(query.getIndex(), "No index defined for Query");
 		Assert.notNull(query.getType(), "No type define for Query");
+		evictAll(query.getIndex(), query.getType());
 		es.prepareDeleteByQuery(query.getIndex()).setTypes(query.getType()).setQuery(query.getQuery()).execute().actionGet();
 	}
 
 	@Override
 	public <T> boolean deleteIndex(Class<T> clazz) {
 		String indexName = getIndexName(clazz);
+		evictAll(indexName, getType(clazz));
 		if (indexExists(indexName)) {
 			return es.admin().indices().delete(new DeleteIndexRequest(indexName)).actionGet().isAcknowledged();
 		}
@@ -237,6 +917,7 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 
 	@Override
 	public void deleteType(String index, String type) {
+		evictAll(index, type);
 		Map<String, MappingMetaData> mappings = es.admin().cluster().prepareState().execute().actionGet().getState().metaData().index(index).mappings();
 		if (mappings.containsKey(type)) {
 			es.admin().indices().deleteMapping(new DeleteMappingRequest(index).type(type)).actionGet();
@@ -253,6 +934,36 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		return es.admin().cluster().prepareState().execute().actionGet().getState().metaData().index(index).mappings().containsKey(type);
 	}
 
+	@Override
+	public <T> boolean exists(String id, Class<T> clazz) {
+		return es.prepareGet(getIndexName(clazz), getType(clazz), id).setFields(new String[0]).execute().actionGet().isExists();
+	}
+
+	@Override
+	public <T> Set<String> existsAll(Iterable<String> ids, Class<T> clazz) {
+		String indexName = getIndexName(clazz);
+		String type = getType(clazz);
+		MultiGetRequest request = new MultiGetRequest();
+		boolean empty = true;
+		for (String id : ids) {
+			request.add(new MultiGetRequest.Item(indexName, type, id).fields(new String[0]));
+			empty = false;
+		}
+		Set<String> existing = new LinkedHashSet<String>();
+		if (empty) {
+			return existing;
+		}
+		for (MultiGetItemResponse item : es.multiGet(request).actionGet().getResponses()) {
+			if (item.isFailed()) {
+				throw new ElasticsearchException("failed to check existence of [" + item.getId() + "]: " + item.getFailure().getMessage());
+			}
+			if (item.getResponse().isExists()) {
+				existing.add(item.getId());
+			}
+		}
+		return existing;
+	}
+
 	@Override
 	public void refresh(String indexName, boolean waitForOperation) {
 		es.admin().indices().refresh(refreshRequest(indexName)).actionGet();
@@ -264,6 +975,20 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		es.admin().indices().refresh(refreshRequest(getIndexName(clazz))).actionGet();
 	}
 
+	@Override
+	public Future<?> scheduleRefresh(String indexName) {
+		RefreshCoalescer coalescer = refreshCoalescer;
+		if (null == coalescer) {
+			synchronized (this) {
+				if (null == refreshCoalescer) {
+					refreshCoalescer = new RefreshCoalescer(this, refreshWindow);
+				}
+				coalescer = refreshCoalescer;
+			}
+		}
+		return coalescer.refresh(indexName);
+	}
+
 	@Override
 	public <T> Page<T> moreLikeThis(MoreLikeThisQuery query, Class<T> clazz) {
 		int startRecord = 0;
@@ -377,23 +1102,146 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 	 * @param clazz
 	 * @return
 	 */
-	private <T> SearchRequestBuilder prepareSearch(Query query, Class<T> clazz) {
+	<T> SearchRequestBuilder prepareSearch(Query query, Class<T> clazz) {
 		if (query.getIndices().isEmpty()) {
 			query.addIndices(getIndexName(clazz));
 		}
 		if (query.getTypes().isEmpty()) {
 			query.addTypes(getType(clazz));
 		}
-		return prepareSearch(query);
+		SearchRequestBuilder request = prepareSearch(query);
+		if (!(query instanceof SearchQuery) || null == ((SearchQuery) query).getSearchType()) {
+			DocumentSearchType documentSearchType = GodHands.getAccessibleAnnotation(clazz, DocumentSearchType.class);
+			if (null != documentSearchType) {
+				request.setSearchType(documentSearchType.value());
+			}
+		}
+		return request;
+	}
+
+	/**
+	 * a scroll search of the query; a scan when nothing is sorted, since a scan does not score or sort
+	 */
+	private <T> SearchRequestBuilder prepareScroll(SearchQuery query, Class<T> clazz, int batchSize, TimeValue keepAlive) {
+		SearchRequestBuilder request = prepareSearch(query, clazz).setFrom(0).setSize(batchSize).setScroll(keepAlive);
+		boolean sorted = (null != query.getPageable().getSorts() && !query.getPageable().getSorts().isEmpty())
+				|| isNotEmpty(query.getElasticsearchSort());
+		if (sorted) {
+			request.setSearchType(QUERY_THEN_FETCH);
+			if (isNotEmpty(query.getElasticsearchSort())) {
+				for (SortBuilder sort : query.getElasticsearchSort()) {
+					request.addSort(sort);
+				}
+			}
+		} else {
+			request.setSearchType(SCAN);
+		}
+		if (null != query.getFilter()) {
+			request.setFilter(query.getFilter());
+		}
+		return request.setQuery(query.getQuery());
+	}
+
+	/**
+	 * one scroll per shard number of the queried indices, each restricted to its shard by preference
+	 */
+	private <T> SlicedScan<T> prepareSlicedScan(SearchQuery query, Class<T> clazz, int parallelism) {
+		Assert.isTrue(parallelism > 0, "parallelism must be positive");
+		TimeValue keepAlive = TimeValue.timeValueMillis(DEFAULT_SCROLL_KEEP_ALIVE);
+		List<SearchRequestBuilder> slices = new ArrayList<SearchRequestBuilder>();
+		slices.add(prepareScroll(query, clazz, DEFAULT_SCROLL_SIZE, keepAlive));
+		MetaData metaData = es.admin().cluster().prepareState().execute().actionGet().getState().metaData();
+		int shards = 1;
+		for (String index : metaData.concreteIndices(toArray(query.getIndices()))) {
+			shards = Math.max(shards, metaData.index(index).numberOfShards());
+		}
+		if (shards > 1) {
+			slices.get(0).setPreference("_shards:0");
+			for (int shard = 1; shard < shards; shard++) {
+				slices.add(prepareScroll(query, clazz, DEFAULT_SCROLL_SIZE, keepAlive).setPreference("_shards:" + shard));
+			}
+		}
+		return new SlicedScan<T>(es, codecRegistry, slices, keepAlive, clazz, parallelism);
+	}
+
+	/**
+	 * hits strictly after the given sort values, in the order of the page sorts followed by _uid: (s1 after v1) or
+	 * (s1 = v1 and s2 after v2) or ...
+	 */
+	private FilterBuilder seekFilter(Page<?> page, List<Object> sortValues) {
+		List<String> fields = new ArrayList<String>();
+		List<Boolean> descending = new ArrayList<Boolean>();
+		if (null != page.getSorts()) {
+			for (String field : page.getSorts().keySet()) {
+				fields.add(field);
+				descending.add(StringUtils.equalsIgnoreCase("desc", page.getSorts().get(field).sort()));
+			}
+		}
+		fields.add(UID_FIELD);
+		descending.add(false);
+		Assert.isTrue(fields.size() == sortValues.size(), "the cursor does not match the sorts of the query");
+		// a missing value is neither comparable nor matched by a term filter
+		Assert.isTrue(!sortValues.contains(null), "the cursor holds a missing sort value");
+
+		OrFilterBuilder seek = FilterBuilders.orFilter();
+		for (int i = 0; i < fields.size(); i++) {
+			AndFilterBuilder clause = FilterBuilders.andFilter();
+			for (int j = 0; j < i; j++) {
+				clause.add(FilterBuilders.termFilter(fields.get(j), sortValues.get(j)));
+			}
+			RangeFilterBuilder range = FilterBuilders.rangeFilter(fields.get(i));
+			clause.add(descending.get(i) ? range.lt(sortValues.get(i)) : range.gt(sortValues.get(i)));
+			seek.add(clause);
+		}
+		return seek;
+	}
+
+	@Override
+	public BytesReference toSource(Object entity) {
+		return codecRegistry.encode(entity);
+	}
+
+	@Override
+	public <T> T fromSource(BytesReference source, Class<T> clazz) {
+		return codecRegistry.decode(source, clazz);
+	}
+
+	@Override
+	public BulkProcessorBuilder prepareBulkProcessor() {
+		return new BulkProcessorBuilder(this);
 	}
 
-	private IndexRequestBuilder prepareIndex(IndexQuery query) {
+	@Override
+	public UpdateRequestBuilder prepareUpdate(UpdateQuery query) {
+		String indexName = isNotBlank(query.getIndexName()) ? query.getIndexName() : getIndexName(query.getClazz());
+		String type = isNotBlank(query.getType()) ? query.getType() : getType(query.getClazz());
+		Assert.notNull(indexName, "No index defined for Query");
+		Assert.notNull(type, "No type define for Query");
+		Assert.notNull(query.getId(), "No Id define for Query");
+		Assert.notNull(query.getIndexRequest(), "No IndexRequest define for Query");
+		UpdateRequestBuilder updateRequestBuilder = es.prepareUpdate(indexName, type, query.getId());
+		evict(indexName, type, query.getId());
+		if (query.DoUpsert()) {
+			updateRequestBuilder.setDocAsUpsert(true).setUpsert(query.getIndexRequest()).setDoc(query.getIndexRequest());
+		} else {
+			updateRequestBuilder.setDoc(query.getIndexRequest());
+		}
+		return updateRequestBuilder;
+	}
+
+	@Override
+	public IndexRequestBuilder prepareIndex(IndexQuery query) {
 		try {
 			String indexName = isBlank(query.getIndexName()) ? getIndexName(query.getObject().getClass()) : query.getIndexName();
 			String type = isBlank(query.getType()) ? getType(query.getObject().getClass()) : query.getType();
 
-			IndexRequestBuilder indexRequestBuilder = es.prepareIndex(indexName, type, query.getId()).setSource(JsonHelper.toJsonString(query.getObject()));
+			BytesReference source = null != query.getSource() ? query.getSource() : toSource(query.getObject());
+			IndexRequestBuilder indexRequestBuilder = es.prepareIndex(indexName, type, query.getId()).setSource(source);
+			evict(indexName, type, query.getId());
 
+			if (isNotBlank(query.getRouting())) {
+				indexRequestBuilder.setRouting(query.getRouting());
+			}
 			if (query.getVersion() != null) {
 				indexRequestBuilder.setVersion(query.getVersion());
 				indexRequestBuilder.setVersionType(EXTERNAL);
@@ -409,7 +1257,7 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		Assert.notNull(query.getTypes(), "No type defined for Query");
 
 		int startRecord = 0;
-		SearchRequestBuilder searchRequestBuilder = es.prepareSearch(toArray(query.getIndices())).setSearchType(DFS_QUERY_THEN_FETCH).setTypes(toArray(query.getTypes()));
+		SearchRequestBuilder searchRequestBuilder = es.prepareSearch(toArray(query.getIndices())).setSearchType(searchType(query)).setTypes(toArray(query.getTypes()));
 
 		if (query.getPageable() != null) {
 			startRecord = (query.getPageable().getCurrentPage() - 1) * query.getPageable().getPageSize();
@@ -429,21 +1277,61 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		return searchRequestBuilder;
 	}
 
-	private <T> EsPage<T> parseResult(SearchResponse response, final Class<T> clazz, Page<?> page,HighlightFieldResultParser<T> parser) {
+	private SearchType searchType(Query query) {
+		if (query instanceof SearchQuery && null != ((SearchQuery) query).getSearchType()) {
+			return ((SearchQuery) query).getSearchType();
+		}
+		return defaultSearchType;
+	}
+
+	/**
+	 * parse the page eagerly, or lazily if the query asks for {@link SearchQuery#isLazyResults()}
+	 */
+	private <T> EsPage<T> parsePage(SearchResponse response, Class<T> clazz, SearchQuery query, HighlightFieldResultParser<T> parser) {
+		if (!query.isLazyResults()) {
+			return parseResult(response, clazz, query.getPageable(), parser);
+		}
 		EsPage<T> facetPage = new EsPage<T>();
+		facetPage.setTotalCount((int) response.getHits().totalHits());
+		facetPage.setResult(new LazyResultList<T>(this, response.getHits().getHits(), clazz, parser));
+		facetPage.setFacets(parseFacet(response.getFacets()));
+		if (null != query.getPageable()) {
+			facetPage.setPageSize(query.getPageable().getPageSize()).setCurrentPage(query.getPageable().getCurrentPage());
+		}
+		return facetPage;
+	}
+
+	/**
+	 * decode one hit and apply its highlighting
+	 */
+	<T> T parseHit(SearchHit hit, Class<T> clazz, HighlightFieldResultParser<T> parser) {
+		T entity = decodeHit(hit, clazz);
+		if (null != parser) {
+			parser.parseResult(hit.getHighlightFields(), entity);
+		} else {
+			handleHighlightFields(hit.getHighlightFields(), entity);
+		}
+		return entity;
+	}
+
+	<T> EsPage<T> parseResult(SearchResponse response, final Class<T> clazz, Page<?> page,HighlightFieldResultParser<T> parser) {
+		return parseResult(new EsPage<T>(), response, clazz, page, parser);
+	}
+
+	private <T, P extends EsPage<T>> P parseResult(P facetPage, SearchResponse response, final Class<T> clazz, Page<?> page,HighlightFieldResultParser<T> parser) {
 		SearchHits hits = response.getHits();
 		long totalHits = hits.totalHits();
 		facetPage.setTotalCount((int) totalHits);
-		List<T> results = new ArrayList<T>();
-		for (SearchHit hit : hits) {
-			if (hit != null) {
-				T entity = JsonHelper.fromJsonString(hit.sourceAsString(), clazz);
+		SearchHit[] hitArray = hits.getHits();
+		List<T> results = decodeHits(hitArray, clazz);
+		for (int i = 0, j = 0; i < hitArray.length; i++) {
+			if (hitArray[i] != null) {
+				T entity = results.get(j++);
 				if(null != parser){
-					parser.parseResult(hit.getHighlightFields(), entity);
+					parser.parseResult(hitArray[i].getHighlightFields(), entity);
 				}else{
-					handleHighlightFields(hit.getHighlightFields(), entity);
+					handleHighlightFields(hitArray[i].getHighlightFields(), entity);
 				}
-				results.add(entity);
 			}
 		}
 		facetPage.setResult(results);
@@ -454,6 +1342,70 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		return facetPage;
 	}
 	
+	/**
+	 * decode the hits in order, in parallel chunks for large responses if {@link #setParallelParsing} is on
+	 */
+	private <T> List<T> decodeHits(final SearchHit[] hits, final Class<T> clazz) {
+		ExecutorService executor = parseExecutor;
+		int chunkSize = parseChunkSize;
+		if (null == executor || hits.length < parallelParseThreshold || hits.length <= chunkSize) {
+			return decodeHits(hits, 0, hits.length, clazz);
+		}
+		List<Future<List<T>>> chunks = new ArrayList<Future<List<T>>>();
+		int from = 0;
+		for (; from + chunkSize < hits.length; from += chunkSize) {
+			final int start = from;
+			final int end = from + chunkSize;
+			chunks.add(executor.submit(new Callable<List<T>>() {
+				@Override
+				public List<T> call() {
+					return decodeHits(hits, start, end, clazz);
+				}
+			}));
+		}
+		// the caller decodes the last chunk instead of waiting idle
+		List<T> last = decodeHits(hits, from, hits.length, clazz);
+		List<T> results = new ArrayList<T>(hits.length);
+		try {
+			for (Future<List<T>> chunk : chunks) {
+				results.addAll(chunk.get());
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			cancel(chunks);
+			throw new ElasticsearchException("interrupted while decoding hits", e);
+		} catch (ExecutionException e) {
+			cancel(chunks);
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new ElasticsearchException("failed to decode hits", e.getCause());
+		}
+		results.addAll(last);
+		return results;
+	}
+
+	private <T> List<T> decodeHits(SearchHit[] hits, int from, int to, Class<T> clazz) {
+		List<T> results = new ArrayList<T>(to - from);
+		for (int i = from; i < to; i++) {
+			if (hits[i] != null) {
+				results.add(decodeHit(hits[i], clazz));
+			}
+		}
+		return results;
+	}
+
+	private <T> T decodeHit(SearchHit hit, Class<T> clazz) {
+		Map<String, Object> projected = Projections.projectedSource(hit);
+		return null != projected ? codecRegistry.decode(projected, clazz) : codecRegistry.decode(hit.sourceRef(), clazz);
+	}
+
+	private static void cancel(List<? extends Future<?>> futures) {
+		for (Future<?> future : futures) {
+			future.cancel(true);
+		}
+	}
+
 	private Map<String, Map<String, Integer>> parseFacet(Facets facets){
 		Map<String, Map<String, Integer>> facetMap = new HashMap<String, Map<String, Integer>>();
 		if(null != facets){
@@ -478,10 +1430,7 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 	 * @return
 	 */
 	private <T> Object handleHighlightFields(Map<String, HighlightField> highlightFields, Object entity) {
-		for (String key : highlightFields.keySet()) {
-			String value = highlightFields.get(key).fragments()[0].string();
-			GodHands.setFieldValue(entity, key, value);
-		}
+		highlightBinder.bind(highlightFields, entity);
 		return entity;
 	}
 
@@ -491,6 +1440,13 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 	 * @return
 	 */
 	private SearchResponse doSearch(SearchRequestBuilder searchRequest, SearchQuery searchQuery) {
+		return prepareQuery(searchRequest, searchQuery).execute().actionGet();
+	}
+
+	/**
+	 * add the query, filter, sorts, facets and highlighting of the search query to the request
+	 */
+	SearchRequestBuilder prepareQuery(SearchRequestBuilder searchRequest, SearchQuery searchQuery) {
 		if (searchQuery.getFilter() != null) {
 			searchRequest.setFilter(searchQuery.getFilter());
 		}
@@ -517,7 +1473,7 @@ public class ElasticsearchOperations implements ElasticsearchRepository {
 		}
 
 		QueryBuilder query = searchQuery.getQuery();
-		return searchRequest.setQuery(query).execute().actionGet();
+		return searchRequest.setQuery(query);
 	}
 
 	/**
@@ -1,13 +1,25 @@
 package com.weasel.elasticsearch.core;
 
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Future;
 
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.index.IndexRequestBuilder;
 import org.elasticsearch.action.suggest.SuggestResponse;
+import org.elasticsearch.action.update.UpdateRequestBuilder;
 import org.elasticsearch.action.update.UpdateResponse;
 import org.elasticsearch.client.Client;
+import org.elasticsearch.common.bytes.BytesReference;
 
 import com.weasel.core.EsPage;
 import com.weasel.core.Page;
+import com.weasel.elasticsearch.core.bulk.BulkDispatchMode;
+import com.weasel.elasticsearch.core.bulk.BulkProcessorBuilder;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.bulk.BulkRetryPolicy;
+import com.weasel.elasticsearch.core.bulk.PartitionedBulkResult;
+import com.weasel.elasticsearch.core.cache.NearCache;
 import com.weasel.elasticsearch.core.query.DeleteQuery;
 import com.weasel.elasticsearch.core.query.GetQuery;
 import com.weasel.elasticsearch.core.query.IndexQuery;
@@ -23,6 +35,57 @@ import com.weasel.elasticsearch.core.query.UpdateQuery;
  */
 public interface ElasticsearchRepository {
 
+	/**
+	 * number of operations sent in one bulk request by the chunked bulk methods
+	 */
+	public static final int DEFAULT_BULK_CHUNK_SIZE = 1000;
+
+	/**
+	 * number of ids fetched in one multi get request by {@link #findAll(Iterable, Class)}
+	 */
+	public static final int DEFAULT_MULTI_GET_CHUNK_SIZE = 100;
+
+	/**
+	 * number of hits fetched per scroll request by {@link #iterate(SearchQuery, Class)}
+	 */
+	public static final int DEFAULT_SCROLL_SIZE = 500;
+
+	/**
+	 * milliseconds a scroll context is kept alive between two scroll requests
+	 */
+	public static final long DEFAULT_SCROLL_KEEP_ALIVE = 60000;
+
+	/**
+	 * Put a near cache in front of {@link #queryForObject(GetQuery, Class)} for the documents of the class. The
+	 * writes of this repository invalidate the entries they touch
+	 * 
+	 * @param clazz
+	 * @param nearCache null to remove the near cache
+	 */
+	void setNearCache(Class<?> clazz, NearCache nearCache);
+
+	/**
+	 * @param clazz
+	 * @return the near cache of the class, null if it has none
+	 */
+	NearCache getNearCache(Class<?> clazz);
+
+	/**
+	 * Invalidate the near cached document, for writes which bypass this repository
+	 * 
+	 * @param indexName
+	 * @param type
+	 * @param id
+	 */
+	void evict(String indexName, String type, String id);
+
+	/**
+	 * Invalidate the near cached documents of a bulk sent around this repository, call it once the bulk completed
+	 * 
+	 * @param request
+	 */
+	void evict(BulkRequest request);
+
 	/**
 	 * Create an index for a class
 	 * 
@@ -40,6 +103,25 @@ public interface ElasticsearchRepository {
 	 */
 	<T> T queryForObject(GetQuery query, Class<T> clazz);
 
+	/**
+	 * Fetch documents by id with multi get. The ids are split into chunks of chunkSize which are sent concurrently
+	 * 
+	 * @param ids
+	 * @param clazz
+	 * @param chunkSize
+	 * @return the documents found in the order of the ids, plus the missing and failed ids
+	 */
+	<T> MultiGetResult<T> findAll(Iterable<String> ids, Class<T> clazz, int chunkSize);
+
+	/**
+	 * Fetch documents by id with multi get requests of {@link #DEFAULT_MULTI_GET_CHUNK_SIZE} ids
+	 * 
+	 * @param ids
+	 * @param clazz
+	 * @return the documents found in the order of the ids, plus the missing and failed ids
+	 */
+	<T> MultiGetResult<T> findAll(Iterable<String> ids, Class<T> clazz);
+
 	/**
 	 * Execute the query against elasticsearch and return result as {@link Page}
 	 * 
@@ -65,6 +147,18 @@ public interface ElasticsearchRepository {
 	 */
 	<T> EsPage<T> queryForPage(SearchQuery query, Class<T> clazz,HighlightFieldResultParser<T> parser);
 
+	/**
+	 * Execute the query against the index of clazz and map the hits to the projection class. Only the fields the
+	 * projection declares are read from _source (by a partial field) and sent back, so wide documents cost only
+	 * what a list view needs
+	 * 
+	 * @param query
+	 * @param clazz the entity, which decides index and type
+	 * @param projection
+	 * @return
+	 */
+	<T, P> EsPage<P> queryForPage(SearchQuery query, Class<T> clazz, Class<P> projection);
+
     /**
      * Execute the search query against elasticsearch and return result as {@link List}
      *
@@ -75,6 +169,28 @@ public interface ElasticsearchRepository {
      */
     <T> List<T> queryForList(SearchQuery query, Class<T> clazz);
 
+	/**
+	 * Execute independent queries in one multi search round trip
+	 * 
+	 * @param queries
+	 * @param clazz
+	 * @return one page per query in the order of the queries, failures are reported per query
+	 */
+	<T> MultiSearchResult<T> queryForPages(List<SearchQuery> queries, Class<T> clazz);
+
+	/**
+	 * Execute the query and return one page of results with a cursor to the next page. Instead of from/size the
+	 * query resumes after the sort values of the last hit of the previous page, so every page costs the same. With
+	 * a point in time keep alive the pages are read from one scroll and see a consistent view of the index. Only
+	 * the sorts of the pageable are supported, they are followed by _uid as tiebreaker. Without a point in time
+	 * every hit must have a value for each sort field, a page ending on a hit which lacks one fails
+	 * 
+	 * @param query with the cursor of the previous page, none for the first page
+	 * @param clazz
+	 * @return
+	 */
+	<T> CursorPage<T> queryForCursorPage(SearchQuery query, Class<T> clazz);
+
 	/**
 	 * Execute the query against elasticsearch and return ids
 	 * 
@@ -83,6 +199,62 @@ public interface ElasticsearchRepository {
 	 */
 	<T> List<String> queryForIds(SearchQuery query);
 
+	/**
+	 * Fetch all the hits of the query. The first request returns the total and the first
+	 * {@link #DEFAULT_SCROLL_SIZE} hits, so small results cost a single round trip; larger ones are read on with
+	 * the scroll opened by that request. No count query is needed
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @return every hit, with the total count and the facets. Everything is held in memory, use
+	 *         {@link #iterate(SearchQuery, Class)} for large results
+	 */
+	<T> EsPage<T> queryForAll(SearchQuery query, Class<T> clazz);
+
+	/**
+	 * Iterate over all the hits of the query with a scroll, holding one batch in memory at a time. Unsorted queries
+	 * use a scan. The pageable of the query is ignored except for its sorts
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @param batchSize hits per scroll request (per shard for a scan)
+	 * @param keepAlive milliseconds the scroll context is kept between two batches
+	 * @return an iterator which must be closed if it is not consumed to the end
+	 */
+	<T> CloseableIterator<T> iterate(SearchQuery query, Class<T> clazz, int batchSize, long keepAlive);
+
+	/**
+	 * Iterate over all the hits of the query with a scroll of {@link #DEFAULT_SCROLL_SIZE}
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @return an iterator which must be closed if it is not consumed to the end
+	 */
+	<T> CloseableIterator<T> iterate(SearchQuery query, Class<T> clazz);
+
+	/**
+	 * Scan all the hits of the query with one scroll per shard (shard preference), parallelism shards at a time,
+	 * handing every entity to the consumer from the scrolling thread. Blocks until every shard is done
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @param parallelism
+	 * @param consumer must be thread safe
+	 * @return number of entities consumed
+	 */
+	<T> long scan(SearchQuery query, Class<T> clazz, int parallelism, ScanConsumer<? super T> consumer);
+
+	/**
+	 * Scan all the hits of the query with one scroll per shard like {@link #scan(SearchQuery, Class, int, ScanConsumer)}
+	 * and merge them into one iterator, in no particular order
+	 * 
+	 * @param query
+	 * @param clazz
+	 * @param parallelism
+	 * @return an iterator which must be closed if it is not consumed to the end
+	 */
+	<T> CloseableIterator<T> parallelIterate(SearchQuery query, Class<T> clazz, int parallelism);
+
 	/**
 	 * return number of elements found by for given query
 	 * 
@@ -108,6 +280,23 @@ public interface ElasticsearchRepository {
      */
     UpdateResponse update(UpdateQuery updateQuery);
 
+	/**
+	 * Partial update of many documents in chunked bulk requests, doc-as-upsert queries included
+	 * 
+	 * @param queries
+	 * @param chunkSize number of updates per bulk request
+	 * @return per item results in the order of the queries
+	 */
+	BulkResult bulkUpdate(List<UpdateQuery> queries, int chunkSize);
+
+	/**
+	 * Partial update of many documents in bulk requests of {@link #DEFAULT_BULK_CHUNK_SIZE}
+	 * 
+	 * @param queries
+	 * @return per item results in the order of the queries
+	 */
+	BulkResult bulkUpdate(List<UpdateQuery> queries);
+
 	/**
 	 * Bulk index all objects. Will do save or update
 	 * 
@@ -115,6 +304,69 @@ public interface ElasticsearchRepository {
 	 */
 	void bulkIndex(List<IndexQuery> queries);
 
+	/**
+	 * Bulk index all objects, resubmitting only the items which failed with a retryable failure (rejected execution,
+	 * timeout...) with exponential backoff. Permanent failures and items which ran out of retries are passed to the
+	 * dead letter handler of the policy and reported in the result
+	 * 
+	 * @param queries
+	 * @param retryPolicy
+	 * @return per item results
+	 */
+	BulkResult bulkIndex(List<IndexQuery> queries, BulkRetryPolicy retryPolicy);
+
+	/**
+	 * Bulk index all objects, split into sub-bulks per target shard or per node which are sent concurrently, so a
+	 * slow shard does not hold back the others. Unlike {@link #bulkIndex(List)} item failures are reported in the
+	 * result instead of thrown
+	 * 
+	 * @param queries
+	 * @param mode
+	 * @return per item results and per partition statistics
+	 */
+	PartitionedBulkResult bulkIndex(List<IndexQuery> queries, BulkDispatchMode mode);
+
+	/**
+	 * Create a long-lived bulk processor which accepts index, update and delete operations from any thread and sends
+	 * them asynchronously
+	 * 
+	 * @return
+	 */
+	BulkProcessorBuilder prepareBulkProcessor();
+
+	/**
+	 * Serialize the entity to its json source with the codec registered for its class
+	 * 
+	 * @param entity
+	 * @return
+	 */
+	BytesReference toSource(Object entity);
+
+	/**
+	 * Deserialize a json source, the reverse of {@link #toSource(Object)}
+	 * 
+	 * @param source
+	 * @param clazz
+	 * @return
+	 */
+	<T> T fromSource(BytesReference source, Class<T> clazz);
+
+	/**
+	 * Build (without executing) the index request for the query
+	 * 
+	 * @param query
+	 * @return
+	 */
+	IndexRequestBuilder prepareIndex(IndexQuery query);
+
+	/**
+	 * Build (without executing) the partial update request for the query
+	 * 
+	 * @param query
+	 * @return
+	 */
+	UpdateRequestBuilder prepareUpdate(UpdateQuery query);
+
 	/**
 	 * Delete the one object with provided id
 	 * 
@@ -134,6 +386,26 @@ public interface ElasticsearchRepository {
 	 */
 	<T> String delete(Class<T> clazz, String id);
 
+	/**
+	 * Delete the objects with provided ids in chunked bulk requests, without refreshing the index
+	 * 
+	 * @param indexName
+	 * @param type
+	 * @param ids
+	 * @param chunkSize number of deletes per bulk request
+	 * @return per item results, deleting a missing document is not a failure
+	 */
+	BulkResult bulkDelete(String indexName, String type, Iterable<String> ids, int chunkSize);
+
+	/**
+	 * Delete the objects with provided ids in chunked bulk requests, without refreshing the index
+	 * 
+	 * @param clazz
+	 * @param ids
+	 * @return per item results
+	 */
+	<T> BulkResult bulkDelete(Class<T> clazz, Iterable<String> ids);
+
 	/**
 	 * Delete all records matching the query
 	 * 
@@ -184,6 +456,24 @@ public interface ElasticsearchRepository {
      */
      boolean typeExists(String index, String type);
 
+	/**
+	 * check if a document exists, without fetching its source
+	 * 
+	 * @param id
+	 * @param clazz
+	 * @return
+	 */
+	<T> boolean exists(String id, Class<T> clazz);
+
+	/**
+	 * check which of the documents exist with a single multi get which fetches no source
+	 * 
+	 * @param ids
+	 * @param clazz
+	 * @return the ids which exist, in the order they were given
+	 */
+	<T> Set<String> existsAll(Iterable<String> ids, Class<T> clazz);
+
 	/**
 	 * refresh the index
 	 * 
@@ -200,6 +490,14 @@ public interface ElasticsearchRepository {
 	 */
 	<T> void refresh(Class<T> clazz, boolean waitForOperation);
 
+	/**
+	 * request a coalesced refresh: all the requests for the same index within the refresh window share one refresh
+	 * 
+	 * @param indexName
+	 * @return completes once the shared refresh has finished
+	 */
+	Future<?> scheduleRefresh(String indexName);
+
 	/**
 	 * more like this query to search for documents that are "like" a specific document.
 	 * 
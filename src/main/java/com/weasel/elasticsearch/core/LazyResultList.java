@@ -0,0 +1,79 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import org.elasticsearch.search.SearchHit;
+
+/**
+ * 延迟反序列化的结果列表,由{@link com.weasel.elasticsearch.core.query.SearchQuery#isLazyResults()}开启.每个hit在第一次被访问时才反序列化(包括高亮),
+ * 结果被缓存.所有元素都反序列化后自动释放原始的hits,也可以调用{@link #release()}立即全部反序列化并释放.线程安全
+ *
+ * @author Dylan
+ */
+public class LazyResultList<T> extends AbstractList<T> implements RandomAccess {
+
+	private final ElasticsearchOperations operations;
+	private final Class<T> clazz;
+	private final HighlightFieldResultParser<T> parser;
+	private final Object[] results;
+
+	private SearchHit[] hits;
+	private int materialized;
+
+	LazyResultList(ElasticsearchOperations operations, SearchHit[] hits, Class<T> clazz, HighlightFieldResultParser<T> parser) {
+		this.operations = operations;
+		this.clazz = clazz;
+		this.parser = parser;
+		List<SearchHit> present = new ArrayList<SearchHit>(hits.length);
+		for (SearchHit hit : hits) {
+			if (null != hit) {
+				present.add(hit);
+			}
+		}
+		this.hits = present.toArray(new SearchHit[present.size()]);
+		this.results = new Object[this.hits.length];
+		if (this.hits.length == 0) {
+			this.hits = null;
+		}
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public synchronized T get(int index) {
+		if (index < 0 || index >= results.length) {
+			throw new IndexOutOfBoundsException("index " + index + ", size " + results.length);
+		}
+		if (null != hits && null != hits[index]) {
+			results[index] = operations.parseHit(hits[index], clazz, parser);
+			hits[index] = null;
+			if (++materialized == results.length) {
+				hits = null;
+			}
+		}
+		return (T) results[index];
+	}
+
+	@Override
+	public int size() {
+		return results.length;
+	}
+
+	/**
+	 * @return number of entities built so far
+	 */
+	public synchronized int getMaterializedCount() {
+		return null == hits ? results.length : materialized;
+	}
+
+	/**
+	 * build every remaining entity and drop the raw hits
+	 */
+	public synchronized void release() {
+		for (int i = 0; null != hits && i < results.length; i++) {
+			get(i);
+		}
+	}
+}
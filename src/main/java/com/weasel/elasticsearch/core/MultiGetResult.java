@@ -0,0 +1,77 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * multi get的结果.迭代得到找到的文档,按请求id的顺序排列;不存在的id和获取失败的id分别单独列出
+ * 
+ * @author Dylan
+ */
+public class MultiGetResult<T> implements Iterable<T> {
+
+	private final List<T> results;
+	private final List<String> missingIds = new ArrayList<String>();
+	private final Map<String, String> failures = new LinkedHashMap<String, String>();
+
+	public MultiGetResult(int expectedSize) {
+		this.results = new ArrayList<T>(expectedSize);
+	}
+
+	public MultiGetResult<T> addResult(T result) {
+		results.add(result);
+		return this;
+	}
+
+	public MultiGetResult<T> addMissing(String id) {
+		missingIds.add(id);
+		return this;
+	}
+
+	public MultiGetResult<T> addFailure(String id, String failureMessage) {
+		failures.put(id, failureMessage);
+		return this;
+	}
+
+	/**
+	 * @return the documents found, in the order of the requested ids
+	 */
+	public List<T> getResults() {
+		return Collections.unmodifiableList(results);
+	}
+
+	/**
+	 * @return ids which do not exist, in the order they were requested
+	 */
+	public List<String> getMissingIds() {
+		return Collections.unmodifiableList(missingIds);
+	}
+
+	/**
+	 * @return id -> failure message of the ids that could not be fetched
+	 */
+	public Map<String, String> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	public boolean hasMissing() {
+		return !missingIds.isEmpty();
+	}
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public int size() {
+		return results.size();
+	}
+
+	@Override
+	public Iterator<T> iterator() {
+		return getResults().iterator();
+	}
+}
@@ -0,0 +1,77 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.weasel.core.EsPage;
+
+/**
+ * multi search的结果,按查询的顺序每个查询一个EsPage.失败的查询对应的page为null,失败原因通过{@link #getFailure(int)}获取
+ * 
+ * @author Dylan
+ */
+public class MultiSearchResult<T> {
+
+	private final List<EsPage<T>> pages;
+	private final Map<Integer, String> failures = new LinkedHashMap<Integer, String>();
+
+	public MultiSearchResult(int size) {
+		this.pages = new ArrayList<EsPage<T>>(size);
+	}
+
+	public MultiSearchResult<T> addPage(EsPage<T> page) {
+		pages.add(page);
+		return this;
+	}
+
+	public MultiSearchResult<T> addFailure(String failureMessage) {
+		failures.put(pages.size(), failureMessage);
+		pages.add(null);
+		return this;
+	}
+
+	/**
+	 * @param index position of the query
+	 * @return the page of the query, null if it failed
+	 */
+	public EsPage<T> getPage(int index) {
+		return pages.get(index);
+	}
+
+	/**
+	 * @return one page per query, null for the failed ones
+	 */
+	public List<EsPage<T>> getPages() {
+		return Collections.unmodifiableList(pages);
+	}
+
+	public boolean isFailed(int index) {
+		return failures.containsKey(index);
+	}
+
+	/**
+	 * @param index position of the query
+	 * @return the failure message, null if the query succeeded
+	 */
+	public String getFailure(int index) {
+		return failures.get(index);
+	}
+
+	/**
+	 * @return position of the query -> failure message
+	 */
+	public Map<Integer, String> getFailures() {
+		return Collections.unmodifiableMap(failures);
+	}
+
+	public boolean hasFailures() {
+		return !failures.isEmpty();
+	}
+
+	public int size() {
+		return pages.size();
+	}
+}
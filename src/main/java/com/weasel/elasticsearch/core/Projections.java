@@ -0,0 +1,58 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHitField;
+
+import com.weasel.elasticsearch.core.codec.BeanProperties;
+
+/**
+ * 投影:只从_source中取出投影类声明的字段.es 0.90的partial field在服务端过滤_source,只传输这些字段
+ * 
+ * @author Dylan
+ */
+final class Projections {
+
+	/**
+	 * name of the partial field carrying the projected source
+	 */
+	static final String PROJECTION_FIELD = "_projection";
+
+	private static final ConcurrentMap<Class<?>, String[]> INCLUDES = new ConcurrentHashMap<Class<?>, String[]>();
+
+	private Projections() {
+	}
+
+	/**
+	 * @return the source include patterns of the projection: every property with a setter (named like the json
+	 *         keys, see {@link BeanProperties}) and everything below it
+	 */
+	static String[] includes(Class<?> projection) {
+		String[] includes = INCLUDES.get(projection);
+		if (null == includes) {
+			List<String> patterns = new ArrayList<String>();
+			for (String property : BeanProperties.setters(projection).keySet()) {
+				patterns.add(property);
+				patterns.add(property + ".*");
+			}
+			includes = patterns.toArray(new String[patterns.size()]);
+			INCLUDES.putIfAbsent(projection, includes);
+		}
+		return includes;
+	}
+
+	/**
+	 * @return the projected source of the hit as parsed by elasticsearch, null if the hit was not fetched with a
+	 *         projection
+	 */
+	@SuppressWarnings("unchecked")
+	static Map<String, Object> projectedSource(SearchHit hit) {
+		SearchHitField field = null == hit.getFields() ? null : hit.getFields().get(PROJECTION_FIELD);
+		return null == field ? null : (Map<String, Object>) field.getValue();
+	}
+}
@@ -0,0 +1,94 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 合并刷新请求:同一个索引在一个窗口期内的所有刷新请求只会触发一次refresh,所有请求者拿到的是同一个Future,
+ * 需要读到自己写入的数据时可以等待该Future
+ * 
+ * @author Dylan
+ */
+public class RefreshCoalescer {
+
+	private final ElasticsearchRepository repository;
+	private final long window;
+	private final ScheduledExecutorService scheduler;
+	private final ConcurrentMap<String, FutureTask<Void>> pending = new ConcurrentHashMap<String, FutureTask<Void>>();
+
+	/**
+	 * @param repository
+	 * @param window refresh window in milliseconds
+	 */
+	public RefreshCoalescer(ElasticsearchRepository repository, long window) {
+		this.repository = repository;
+		this.window = window;
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "refresh-coalescer");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/**
+	 * request a refresh of the index, joining the one already scheduled if any
+	 * 
+	 * @param indexName
+	 * @return completes once a refresh which started after this call has finished
+	 */
+	public Future<Void> refresh(String indexName) {
+		FutureTask<Void> task = pending.get(indexName);
+		if (null != task) {
+			return task;
+		}
+		RefreshCall call = new RefreshCall(indexName);
+		FutureTask<Void> created = new FutureTask<Void>(call);
+		call.task = created;
+		task = pending.putIfAbsent(indexName, created);
+		if (null != task) {
+			return task;
+		}
+		try {
+			scheduler.schedule(created, window, TimeUnit.MILLISECONDS);
+		} catch (RejectedExecutionException e) {
+			created.run();
+		}
+		return created;
+	}
+
+	/**
+	 * stop the scheduler thread, the scheduled refreshes still run and later requests refresh right away
+	 */
+	public void shutdown() {
+		scheduler.shutdown();
+	}
+
+	private class RefreshCall implements Callable<Void> {
+
+		private final String indexName;
+		private FutureTask<Void> task;
+
+		RefreshCall(String indexName) {
+			this.indexName = indexName;
+		}
+
+		@Override
+		public Void call() throws Exception {
+			// writes arriving from now on need a new refresh, the ones before are covered by this one
+			pending.remove(indexName, task);
+			repository.refresh(indexName, true);
+			return null;
+		}
+	}
+}
@@ -0,0 +1,24 @@
+package com.weasel.elasticsearch.core;
+
+/**
+ * 写操作之后如何刷新索引
+ * 
+ * @author Dylan
+ */
+public enum RefreshPolicy {
+
+	/**
+	 * never refresh after a write, rely on the index refresh_interval
+	 */
+	NONE,
+
+	/**
+	 * merge the refresh requests of all threads into at most one refresh per index per refresh window
+	 */
+	COALESCED,
+
+	/**
+	 * refresh right after every write (the historical behaviour)
+	 */
+	IMMEDIATE
+}
@@ -0,0 +1,15 @@
+package com.weasel.elasticsearch.core;
+
+/**
+ * 并行scan的回调.各个分片在各自的线程中调用,实现必须是线程安全的
+ * 
+ * @author Dylan
+ */
+public interface ScanConsumer<T> {
+
+	/**
+	 * @param slice the slice (shard number) the entity was read from
+	 * @param entity
+	 */
+	void accept(int slice, T entity);
+}
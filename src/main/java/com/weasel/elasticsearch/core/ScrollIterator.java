@@ -0,0 +1,119 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.search.SearchHit;
+
+import com.weasel.elasticsearch.core.codec.EntityCodecRegistry;
+
+/**
+ * 基于scroll的迭代器.每次只在内存中保留一批hits,消费完当前一批才请求下一批
+ * 
+ * @author Dylan
+ */
+class ScrollIterator<T> implements CloseableIterator<T> {
+
+	private final Client es;
+	private final EntityCodecRegistry codecRegistry;
+	private final TimeValue keepAlive;
+	private final Class<T> clazz;
+
+	private final long totalHits;
+
+	private String scrollId;
+	private Iterator<SearchHit> hits;
+	private long fetched;
+	private boolean finished = false;
+
+	/**
+	 * @param es
+	 * @param codecRegistry decodes the hits
+	 * @param response the response of the initial scroll search, its hits (none for a scan) are returned first
+	 * @param keepAlive
+	 * @param clazz
+	 */
+	ScrollIterator(Client es, EntityCodecRegistry codecRegistry, SearchResponse response, TimeValue keepAlive, Class<T> clazz) {
+		this.es = es;
+		this.codecRegistry = codecRegistry;
+		this.keepAlive = keepAlive;
+		this.clazz = clazz;
+		this.scrollId = response.getScrollId();
+		this.hits = response.getHits().iterator();
+		this.totalHits = response.getHits().totalHits();
+		this.fetched = response.getHits().getHits().length;
+	}
+
+	/**
+	 * @return total number of hits of the query, known from the first response
+	 */
+	long getTotalHits() {
+		return totalHits;
+	}
+
+	@Override
+	public boolean hasNext() {
+		while (!hits.hasNext()) {
+			if (finished) {
+				return false;
+			}
+			if (fetched >= totalHits) {
+				// everything fetched, no need for the trailing empty scroll round trip
+				close();
+				return false;
+			}
+			SearchResponse response;
+			try {
+				response = es.prepareSearchScroll(scrollId).setScroll(keepAlive).execute().actionGet();
+			} catch (RuntimeException e) {
+				close();
+				throw e;
+			}
+			scrollId = response.getScrollId();
+			if (response.getHits().getHits().length == 0) {
+				close();
+				return false;
+			}
+			hits = response.getHits().iterator();
+			fetched += response.getHits().getHits().length;
+		}
+		return true;
+	}
+
+	@Override
+	public T next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return codecRegistry.decode(hits.next().sourceRef(), clazz);
+	}
+
+	@Override
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * release the scroll context on the cluster instead of waiting for its keep alive to expire. The clear request
+	 * is not waited for
+	 */
+	@Override
+	public void close() {
+		if (finished) {
+			return;
+		}
+		finished = true;
+		hits = Collections.<SearchHit> emptyList().iterator();
+		if (null != scrollId) {
+			try {
+				es.prepareClearScroll().addScrollId(scrollId).execute();
+			} catch (RuntimeException e) {
+				// the context expires after the keep alive anyway
+			}
+		}
+	}
+}
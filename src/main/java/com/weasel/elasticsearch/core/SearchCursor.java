@@ -0,0 +1,96 @@
+package com.weasel.elasticsearch.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.Base64;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.elasticsearch.common.xcontent.XContentHelper;
+
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 游标分页的位置:上一页最后一个hit的排序值(最后一个是_uid),或者point in time分页的scroll id,以及已经返回的hit数.
+ * 对调用方来说是不透明的url safe字符串
+ * 
+ * @author Dylan
+ */
+class SearchCursor {
+
+	private final List<Object> sortValues;
+	private final String scrollId;
+	private final long offset;
+
+	SearchCursor(List<Object> sortValues, String scrollId, long offset) {
+		this.sortValues = sortValues;
+		this.scrollId = scrollId;
+		this.offset = offset;
+	}
+
+	/**
+	 * @param sortValues the sort values of the last hit of the page
+	 */
+	static SearchCursor after(Object[] sortValues, long offset) {
+		List<Object> values = new ArrayList<Object>(sortValues.length);
+		for (Object value : sortValues) {
+			// string sort values come back as Text over the transport
+			values.add(value instanceof Text ? value.toString() : value);
+		}
+		return new SearchCursor(values, null, offset);
+	}
+
+	static SearchCursor scroll(String scrollId, long offset) {
+		return new SearchCursor(null, scrollId, offset);
+	}
+
+	List<Object> getSortValues() {
+		return sortValues;
+	}
+
+	String getScrollId() {
+		return scrollId;
+	}
+
+	long getOffset() {
+		return offset;
+	}
+
+	String encode() {
+		try {
+			XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+			if (null != sortValues) {
+				builder.field("s", sortValues);
+			}
+			if (null != scrollId) {
+				builder.field("p", scrollId);
+			}
+			builder.field("o", offset).endObject();
+			return Base64.encodeBytes(builder.bytes().toBytes(), Base64.URL_SAFE);
+		} catch (IOException e) {
+			throw new ElasticsearchException("failed to encode the search cursor", e);
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	static SearchCursor decode(String cursor) {
+		Map<String, Object> map;
+		try {
+			map = XContentHelper.convertToMap(new BytesArray(Base64.decode(cursor, Base64.URL_SAFE)), false).v2();
+		} catch (Exception e) {
+			throw new IllegalArgumentException("invalid search cursor [" + cursor + "]", e);
+		}
+		Object offset = map.get("o");
+		return new SearchCursor((List<Object>) map.get("s"), (String) map.get("p"), null == offset ? 0 : ((Number) offset).longValue());
+	}
+
+	@Override
+	public String toString() {
+		return null != scrollId ? "scroll[" + scrollId + "]" : "after" + (null == sortValues ? "[]" : Arrays.toString(sortValues.toArray()));
+	}
+}
@@ -0,0 +1,248 @@
+package com.weasel.elasticsearch.core;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.elasticsearch.action.search.SearchRequestBuilder;
+import org.elasticsearch.client.Client;
+import org.elasticsearch.common.unit.TimeValue;
+
+import com.weasel.elasticsearch.core.codec.EntityCodecRegistry;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 把一个scroll拆成多个互不相交的slice(每个shard一个),每个slice在自己的线程里scroll
+ * 
+ * @author Dylan
+ */
+class SlicedScan<T> {
+
+	private static final AtomicInteger SCAN_ID_GEN = new AtomicInteger();
+
+	private final Client es;
+	private final EntityCodecRegistry codecRegistry;
+	private final List<SearchRequestBuilder> slices;
+	private final TimeValue keepAlive;
+	private final Class<T> clazz;
+	private final int parallelism;
+
+	/**
+	 * @param es
+	 * @param codecRegistry decodes the hits
+	 * @param slices one scroll request per slice, not executed yet
+	 * @param keepAlive
+	 * @param clazz
+	 * @param parallelism number of slices scrolled at the same time
+	 */
+	SlicedScan(Client es, EntityCodecRegistry codecRegistry, List<SearchRequestBuilder> slices, TimeValue keepAlive, Class<T> clazz, int parallelism) {
+		this.es = es;
+		this.codecRegistry = codecRegistry;
+		this.slices = slices;
+		this.keepAlive = keepAlive;
+		this.clazz = clazz;
+		this.parallelism = Math.max(1, Math.min(parallelism, slices.size()));
+	}
+
+	/**
+	 * scroll every slice and hand each entity to the consumer, blocking until all slices are done. The first
+	 * failure stops the other slices and is rethrown
+	 * 
+	 * @return number of entities consumed
+	 */
+	long forEach(final ScanConsumer<? super T> consumer) {
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		ExecutorService executor = newExecutor();
+		List<Future<Long>> futures = new ArrayList<Future<Long>>(slices.size());
+		try {
+			for (int i = 0; i < slices.size(); i++) {
+				final int slice = i;
+				futures.add(executor.submit(new Callable<Long>() {
+					@Override
+					public Long call() {
+						long count = 0;
+						CloseableIterator<T> iterator = null;
+						try {
+							iterator = open(slice);
+							while (null == failure.get() && iterator.hasNext()) {
+								consumer.accept(slice, iterator.next());
+								count++;
+							}
+						} catch (RuntimeException e) {
+							failure.compareAndSet(null, e);
+						} catch (Error e) {
+							failure.compareAndSet(null, e);
+						} finally {
+							if (null != iterator) {
+								iterator.close();
+							}
+						}
+						return count;
+					}
+				}));
+			}
+			long total = 0;
+			for (Future<Long> future : futures) {
+				total += future.get();
+			}
+			if (null != failure.get()) {
+				throw new ElasticsearchException("parallel scan failed", failure.get());
+			}
+			return total;
+		} catch (InterruptedException e) {
+			failure.compareAndSet(null, e);
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("interrupted while waiting for the parallel scan", e);
+		} catch (ExecutionException e) {
+			throw new ElasticsearchException("parallel scan failed", e.getCause());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * scroll every slice in the background and merge the entities into one iterator. At most capacity entities
+	 * are buffered, slower consumers hold the slices back
+	 */
+	CloseableIterator<T> iterator(int capacity) {
+		final MergedIterator iterator = new MergedIterator(capacity);
+		for (int i = 0; i < slices.size(); i++) {
+			final int slice = i;
+			iterator.executor.execute(new Runnable() {
+				@Override
+				public void run() {
+					CloseableIterator<T> source = null;
+					try {
+						source = open(slice);
+						while (!iterator.closed && source.hasNext()) {
+							iterator.queue.put(source.next());
+						}
+						iterator.queue.put(END);
+					} catch (InterruptedException e) {
+						// closed by the consumer
+					} catch (Throwable e) {
+						// errors too, otherwise the consumer would wait for this slice forever
+						try {
+							iterator.queue.put(new Failure(e));
+						} catch (InterruptedException closed) {
+							// closed by the consumer
+						}
+					} finally {
+						if (null != source) {
+							source.close();
+						}
+					}
+				}
+			});
+		}
+		iterator.executor.shutdown();
+		return iterator;
+	}
+
+	private CloseableIterator<T> open(int slice) {
+		return new ScrollIterator<T>(es, codecRegistry, slices.get(slice).execute().actionGet(), keepAlive, clazz);
+	}
+
+	private ExecutorService newExecutor() {
+		final String name = "parallel-scan-" + SCAN_ID_GEN.incrementAndGet();
+		return Executors.newFixedThreadPool(parallelism, new ThreadFactory() {
+			private final AtomicInteger threadId = new AtomicInteger();
+
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + threadId.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	private static final Object END = new Object();
+
+	private static class Failure {
+		private final Throwable cause;
+
+		Failure(Throwable cause) {
+			this.cause = cause;
+		}
+	}
+
+	private class MergedIterator implements CloseableIterator<T> {
+
+		private final BlockingQueue<Object> queue;
+		private final ExecutorService executor = newExecutor();
+		private volatile boolean closed = false;
+		private int finishedSlices = 0;
+		private Object next;
+
+		MergedIterator(int capacity) {
+			this.queue = new ArrayBlockingQueue<Object>(capacity);
+		}
+
+		@Override
+		public boolean hasNext() {
+			while (null == next) {
+				if (closed || finishedSlices == slices.size()) {
+					return false;
+				}
+				Object element;
+				try {
+					element = queue.take();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					close();
+					throw new ElasticsearchException("interrupted while waiting for the parallel scan", e);
+				}
+				if (END == element) {
+					finishedSlices++;
+				} else if (element instanceof Failure) {
+					close();
+					throw new ElasticsearchException("parallel scan failed", ((Failure) element).cause);
+				} else {
+					next = element;
+				}
+			}
+			return true;
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public T next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			T element = (T) next;
+			next = null;
+			return element;
+		}
+
+		@Override
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * stop the slices, which clear their scroll contexts
+		 */
+		@Override
+		public void close() {
+			if (closed) {
+				return;
+			}
+			closed = true;
+			next = null;
+			executor.shutdownNow();
+			queue.clear();
+		}
+	}
+}
@@ -0,0 +1,317 @@
+package com.weasel.elasticsearch.core;
+
+import static org.apache.commons.lang.StringUtils.isBlank;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+import org.springframework.util.Assert;
+
+import com.weasel.elasticsearch.core.async.EsFuture;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
+import com.weasel.elasticsearch.core.bulk.BulkRetryPolicy;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 延迟写缓冲区:按index/type/id合并写操作,同一个文档多次写入只保留最后一次.缓冲的文档数达到上限或者到达刷新间隔时,
+ * 通过bulk写入es.写入失败的文档按{@link BulkRetryPolicy}重试,仍失败的交给它的DeadLetterHandler(必须设置).
+ * 整个bulk发送失败时这一批放回缓冲区,由下一次刷新重试.同时最多只有一个等待中的刷新任务;
+ * 缓冲的文档数达到capacity(es变慢或者不可用时)后,新文档的{@link #put(IndexQuery)}抛出异常,缓冲区不会无限增长
+ *
+ * <p>
+ * 进程退出前必须调用{@link #close()},否则缓冲中的写操作会丢失
+ *
+ * @author Dylan
+ */
+public class WriteBehindBuffer implements Closeable {
+
+	private static final ESLogger logger = Loggers.getLogger(WriteBehindBuffer.class);
+	/**
+	 * default capacity in multiples of maxSize
+	 */
+	private static final int DEFAULT_CAPACITY_FACTOR = 10;
+
+	private final ElasticsearchRepository repository;
+	private final int maxSize;
+	private final int capacity;
+	private final BulkRetryPolicy retryPolicy;
+	private final ScheduledExecutorService scheduler;
+	private final ExecutorService flusher;
+	private final Object flushLock = new Object();
+	private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+	private Map<String, IndexQuery> pending = new LinkedHashMap<String, IndexQuery>();
+	/**
+	 * the batch being written, still visible to {@link #get(String, String, String)} until the bulk is done
+	 */
+	private volatile Map<String, IndexQuery> flushing = Collections.emptyMap();
+	private volatile Runnable afterFlush;
+	private volatile boolean closed = false;
+
+	/**
+	 * buffer at most ten times maxSize documents
+	 * 
+	 * @param repository
+	 * @param maxSize number of distinct documents which triggers a flush
+	 * @param flushInterval milliseconds between two scheduled flushes
+	 * @param retryPolicy must have a DeadLetterHandler, it is the only place permanently failed documents end up
+	 */
+	public WriteBehindBuffer(ElasticsearchRepository repository, int maxSize, long flushInterval, BulkRetryPolicy retryPolicy) {
+		this(repository, maxSize, (int) Math.min(Integer.MAX_VALUE, (long) maxSize * DEFAULT_CAPACITY_FACTOR), flushInterval, retryPolicy);
+	}
+
+	/**
+	 * @param repository
+	 * @param maxSize number of distinct documents which triggers a flush
+	 * @param capacity number of distinct documents at which {@link #put(IndexQuery)} fails, e.g. while the bulks fail
+	 * @param flushInterval milliseconds between two scheduled flushes
+	 * @param retryPolicy must have a DeadLetterHandler, it is the only place permanently failed documents end up
+	 */
+	public WriteBehindBuffer(ElasticsearchRepository repository, int maxSize, int capacity, long flushInterval, BulkRetryPolicy retryPolicy) {
+		Assert.notNull(repository, "repository must not be null");
+		Assert.isTrue(maxSize > 0, "maxSize must be positive");
+		Assert.isTrue(capacity >= maxSize, "capacity must not be less than maxSize");
+		Assert.isTrue(flushInterval > 0, "flushInterval must be positive");
+		Assert.notNull(retryPolicy, "retryPolicy must not be null");
+		Assert.notNull(retryPolicy.getDeadLetterHandler(), "retryPolicy must have a DeadLetterHandler, failed documents would be lost otherwise");
+		this.repository = repository;
+		this.maxSize = maxSize;
+		this.capacity = capacity;
+		this.retryPolicy = retryPolicy;
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "write-behind-flush");
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+		this.flusher = Executors.newSingleThreadExecutor(threadFactory);
+		this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+		this.scheduler.scheduleWithFixedDelay(new Runnable() {
+			@Override
+			public void run() {
+				flushQuietly();
+			}
+		}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * @param afterFlush run after every non empty flush, e.g. to refresh the index
+	 */
+	public void setAfterFlush(Runnable afterFlush) {
+		this.afterFlush = afterFlush;
+	}
+
+	/**
+	 * buffer the write, replacing a pending write of the same document. The entity is encoded now, changing it
+	 * afterwards does not change the buffered write
+	 *
+	 * @param query
+	 * @throws ElasticsearchException if the buffer is at its capacity, a write of an already buffered document is
+	 *             still accepted
+	 */
+	public void put(IndexQuery query) {
+		Assert.notNull(query.getId(), "write-behind needs an id to coalesce writes");
+		String key = key(query);
+		if (null == query.getSource()) {
+			query.setSource(repository.toSource(query.getObject()));
+		}
+		boolean full;
+		synchronized (this) {
+			if (closed) {
+				throw new IllegalStateException("write-behind buffer already closed");
+			}
+			if (pending.size() >= capacity && !pending.containsKey(key)) {
+				throw new ElasticsearchException("write-behind buffer is full with [" + pending.size()
+						+ "] documents, elasticsearch does not keep up with the writes");
+			}
+			pending.put(key, query);
+			full = pending.size() >= maxSize;
+		}
+		// one scheduled flush takes everything buffered until it runs, more tasks would only pile up
+		if (full && flushScheduled.compareAndSet(false, true)) {
+			try {
+				flusher.execute(new Runnable() {
+					@Override
+					public void run() {
+						flushScheduled.set(false);
+						flushQuietly();
+					}
+				});
+			} catch (RejectedExecutionException e) {
+				flushScheduled.set(false);
+				flush();
+			}
+		}
+	}
+
+	/**
+	 * @return the buffered (or being written) write of the document, null if there is none
+	 */
+	public IndexQuery get(String index, String type, String id) {
+		String key = key(index, type, id);
+		IndexQuery query;
+		synchronized (this) {
+			query = pending.get(key);
+		}
+		return null != query ? query : flushing.get(key);
+	}
+
+	/**
+	 * @return a new entity decoded from the buffered (or being written) source of the document, null if there is none
+	 */
+	public <T> T getEntity(String index, String type, String id, Class<T> clazz) {
+		IndexQuery query = get(index, type, id);
+		return null == query ? null : repository.fromSource(query.getSource(), clazz);
+	}
+
+	/**
+	 * drop the buffered write of the document, e.g. because it is deleted. Waits for a flush in progress, so the
+	 * caller's next operation reaches elasticsearch after that bulk
+	 *
+	 * @return true if there was one
+	 */
+	public boolean remove(String index, String type, String id) {
+		synchronized (flushLock) {
+			synchronized (this) {
+				return null != pending.remove(key(index, type, id));
+			}
+		}
+	}
+
+	public void clear() {
+		synchronized (flushLock) {
+			synchronized (this) {
+				pending.clear();
+			}
+		}
+	}
+
+	public synchronized int size() {
+		return pending.size();
+	}
+
+	/**
+	 * write the buffered documents now and wait for the bulk to complete. If the bulk can not be sent at all the
+	 * batch is put back into the buffer (newer writes of the same documents win) and the exception is rethrown
+	 *
+	 * @return null if there was nothing to write
+	 */
+	public BulkResult flush() {
+		synchronized (flushLock) {
+			Map<String, IndexQuery> batch;
+			synchronized (this) {
+				if (pending.isEmpty()) {
+					return null;
+				}
+				batch = pending;
+				pending = new LinkedHashMap<String, IndexQuery>();
+				flushing = batch;
+			}
+			BulkResult result;
+			try {
+				result = repository.bulkIndex(new ArrayList<IndexQuery>(batch.values()), retryPolicy);
+			} catch (RuntimeException e) {
+				synchronized (this) {
+					Map<String, IndexQuery> newer = pending;
+					pending = batch;
+					pending.putAll(newer);
+				}
+				throw e;
+			} finally {
+				flushing = Collections.emptyMap();
+			}
+			Runnable callback = afterFlush;
+			if (null != callback) {
+				callback.run();
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * {@link #flush()} on the flusher thread, the caller is not blocked
+	 *
+	 * @return completed with null if there was nothing to write
+	 */
+	public EsFuture<BulkResult> flushAsync() {
+		final EsFuture<BulkResult> future = new EsFuture<BulkResult>();
+		Runnable task = new Runnable() {
+			@Override
+			public void run() {
+				try {
+					future.complete(flush());
+				} catch (Throwable e) {
+					future.fail(e);
+				}
+			}
+		};
+		try {
+			flusher.execute(task);
+		} catch (RejectedExecutionException e) {
+			// closed, flush() now only writes what was put before close
+			task.run();
+		}
+		return future;
+	}
+
+	/**
+	 * flush from the timer or the flusher thread, where nobody would see the exception
+	 */
+	private void flushQuietly() {
+		try {
+			BulkResult result = flush();
+			if (null != result && result.hasFailures()) {
+				logger.warn("[{}] buffered documents failed permanently and went to the DeadLetterHandler", result.getFailed());
+			}
+		} catch (RuntimeException e) {
+			logger.warn("failed to flush [{}] buffered documents, they are kept for the next flush", e, size());
+		}
+	}
+
+	/**
+	 * stop the timer and write everything still buffered
+	 */
+	@Override
+	public void close() {
+		synchronized (this) {
+			if (closed) {
+				return;
+			}
+			closed = true;
+		}
+		scheduler.shutdownNow();
+		flusher.shutdown();
+		try {
+			flusher.awaitTermination(1, TimeUnit.MINUTES);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		flush();
+	}
+
+	private String key(IndexQuery query) {
+		Class<?> clazz = query.getObject().getClass();
+		String index = isBlank(query.getIndexName()) ? repository.getIndexName(clazz) : query.getIndexName();
+		String type = isBlank(query.getType()) ? repository.getType(clazz) : query.getType();
+		return key(index, type, query.getId());
+	}
+
+	private static String key(String index, String type, String id) {
+		return index + '/' + type + '/' + id;
+	}
+}
@@ -0,0 +1,286 @@
+package com.weasel.elasticsearch.core.async;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 可以添加回调和组合的Future,由es client的ActionListener完成.
+ * 
+ * <p>
+ * {@link #map(Transformer, Executor)}和{@link #flatMap(Transformer)}在不阻塞线程的情况下串联异步调用,
+ * {@link #allOf(List)}合并并发的多个调用
+ * 
+ * @author Dylan
+ */
+public class EsFuture<T> implements Future<T> {
+
+	private static final ESLogger logger = Loggers.getLogger(EsFuture.class);
+
+	private final CountDownLatch done = new CountDownLatch(1);
+	private volatile T value;
+	private volatile Throwable failure;
+	private volatile boolean cancelled;
+	/**
+	 * null once completed, guarded by this
+	 */
+	private List<FutureListener<? super T>> listeners = new ArrayList<FutureListener<? super T>>();
+
+	/**
+	 * @return false if the future was already completed
+	 */
+	public boolean complete(T value) {
+		return finish(value, null, false);
+	}
+
+	/**
+	 * @return false if the future was already completed
+	 */
+	public boolean fail(Throwable failure) {
+		return finish(null, failure, false);
+	}
+
+	/**
+	 * completes the future as cancelled; the request already sent to elasticsearch is not aborted
+	 */
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return finish(null, new CancellationException(), true);
+	}
+
+	@Override
+	public boolean isCancelled() {
+		return cancelled;
+	}
+
+	@Override
+	public boolean isDone() {
+		return done.getCount() == 0;
+	}
+
+	@Override
+	public T get() throws InterruptedException, ExecutionException {
+		done.await();
+		return report();
+	}
+
+	@Override
+	public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+		if (!done.await(timeout, unit)) {
+			throw new TimeoutException();
+		}
+		return report();
+	}
+
+	/**
+	 * block until the result is available, like the synchronous api
+	 * 
+	 * @throws ElasticsearchException wrapping a checked failure
+	 */
+	public T actionGet() {
+		try {
+			done.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new ElasticsearchException("interrupted while waiting for the result", e);
+		}
+		if (cancelled) {
+			throw (CancellationException) failure;
+		}
+		if (failure instanceof RuntimeException) {
+			throw (RuntimeException) failure;
+		}
+		if (failure instanceof Error) {
+			throw (Error) failure;
+		}
+		if (null != failure) {
+			throw new ElasticsearchException(failure.getMessage(), failure);
+		}
+		return value;
+	}
+
+	public EsFuture<T> addListener(FutureListener<? super T> listener) {
+		synchronized (this) {
+			if (null != listeners) {
+				listeners.add(listener);
+				return this;
+			}
+		}
+		fire(listener);
+		return this;
+	}
+
+	/**
+	 * @param transformer applied to the result, a failure is passed on unchanged
+	 * @param executor runs the transformer, null to run it in the completing thread
+	 * @return
+	 */
+	public <R> EsFuture<R> map(final Transformer<? super T, ? extends R> transformer, final Executor executor) {
+		final EsFuture<R> mapped = new EsFuture<R>();
+		addListener(new FutureListener<T>() {
+			@Override
+			public void onSuccess(final T result) {
+				Runnable task = new Runnable() {
+					@Override
+					public void run() {
+						try {
+							mapped.complete(transformer.apply(result));
+						} catch (Throwable e) {
+							// errors too, the future must not stay uncompleted
+							mapped.fail(e);
+						}
+					}
+				};
+				if (null == executor) {
+					task.run();
+					return;
+				}
+				try {
+					executor.execute(task);
+				} catch (RejectedExecutionException e) {
+					mapped.fail(e);
+				}
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+				mapped.fail(failure);
+			}
+		});
+		return mapped;
+	}
+
+	/**
+	 * chain an asynchronous call on the result
+	 * 
+	 * @param transformer returns the future of the next call
+	 * @return
+	 */
+	public <R> EsFuture<R> flatMap(final Transformer<? super T, EsFuture<R>> transformer) {
+		final EsFuture<R> chained = new EsFuture<R>();
+		addListener(new FutureListener<T>() {
+			@Override
+			public void onSuccess(T result) {
+				EsFuture<R> next;
+				try {
+					next = transformer.apply(result);
+				} catch (Throwable e) {
+					chained.fail(e);
+					return;
+				}
+				next.addListener(new FutureListener<R>() {
+					@Override
+					public void onSuccess(R result) {
+						chained.complete(result);
+					}
+
+					@Override
+					public void onFailure(Throwable failure) {
+						chained.fail(failure);
+					}
+				});
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+				chained.fail(failure);
+			}
+		});
+		return chained;
+	}
+
+	/**
+	 * @return a future of all the results in the order of the futures, failed with the first failure
+	 */
+	public static <T> EsFuture<List<T>> allOf(final List<EsFuture<T>> futures) {
+		final EsFuture<List<T>> all = new EsFuture<List<T>>();
+		if (futures.isEmpty()) {
+			all.complete(new ArrayList<T>());
+			return all;
+		}
+		final AtomicInteger remaining = new AtomicInteger(futures.size());
+		for (EsFuture<T> future : futures) {
+			future.addListener(new FutureListener<T>() {
+				@Override
+				public void onSuccess(T result) {
+					if (remaining.decrementAndGet() == 0) {
+						List<T> results = new ArrayList<T>(futures.size());
+						for (EsFuture<T> completed : futures) {
+							results.add(completed.value);
+						}
+						all.complete(results);
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable failure) {
+					all.fail(failure);
+				}
+			});
+		}
+		return all;
+	}
+
+	public static <T> EsFuture<T> completed(T value) {
+		EsFuture<T> future = new EsFuture<T>();
+		future.complete(value);
+		return future;
+	}
+
+	private boolean finish(T value, Throwable failure, boolean cancelled) {
+		List<FutureListener<? super T>> toNotify;
+		synchronized (this) {
+			if (null == listeners) {
+				return false;
+			}
+			this.value = value;
+			this.failure = failure;
+			this.cancelled = cancelled;
+			toNotify = listeners;
+			listeners = null;
+			done.countDown();
+		}
+		for (FutureListener<? super T> listener : toNotify) {
+			fire(listener);
+		}
+		return true;
+	}
+
+	/**
+	 * a listener which throws must not keep the others from being notified
+	 */
+	private void fire(FutureListener<? super T> listener) {
+		try {
+			if (null == failure) {
+				listener.onSuccess(value);
+			} else {
+				listener.onFailure(failure);
+			}
+		} catch (Throwable e) {
+			logger.warn("future listener [{}] failed", e, listener);
+		}
+	}
+
+	private T report() throws ExecutionException {
+		if (cancelled) {
+			throw (CancellationException) failure;
+		}
+		if (null != failure) {
+			throw new ExecutionException(failure);
+		}
+		return value;
+	}
+}
@@ -0,0 +1,13 @@
+package com.weasel.elasticsearch.core.async;
+
+/**
+ * {@link EsFuture}完成时的回调,在完成它的线程中调用(已经完成时在添加它的线程中调用)
+ * 
+ * @author Dylan
+ */
+public interface FutureListener<T> {
+
+	void onSuccess(T result);
+
+	void onFailure(Throwable failure);
+}
@@ -0,0 +1,11 @@
+package com.weasel.elasticsearch.core.async;
+
+/**
+ * 把一个异步结果转换成另一个
+ * 
+ * @author Dylan
+ */
+public interface Transformer<F, T> {
+
+	T apply(F input);
+}
@@ -0,0 +1,24 @@
+package com.weasel.elasticsearch.core.bulk;
+
+/**
+ * bulk请求的分发方式
+ * 
+ * @author Dylan
+ */
+public enum BulkDispatchMode {
+
+	/**
+	 * one bulk request for the whole batch
+	 */
+	SINGLE,
+
+	/**
+	 * one sub-bulk per target shard, sent concurrently
+	 */
+	SHARD,
+
+	/**
+	 * one sub-bulk per node holding the primary of the target shard, sent concurrently
+	 */
+	NODE
+}
@@ -0,0 +1,61 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+
+/**
+ * bulk请求中单个操作的结果
+ * 
+ * @author Dylan
+ */
+public class BulkItemResult {
+
+	private final String index;
+	private final String type;
+	private final String id;
+	private final long version;
+	private final String failureMessage;
+
+	public BulkItemResult(String index, String type, String id, long version, String failureMessage) {
+		this.index = index;
+		this.type = type;
+		this.id = id;
+		this.version = version;
+		this.failureMessage = failureMessage;
+	}
+
+	public static BulkItemResult of(BulkItemResponse item) {
+		return new BulkItemResult(item.getIndex(), item.getType(), item.getId(), item.getVersion(), item.isFailed() ? item.getFailureMessage() : null);
+	}
+
+	public String getIndex() {
+		return index;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getId() {
+		return id;
+	}
+
+	/**
+	 * @return version of the document after the operation, meaningless if failed
+	 */
+	public long getVersion() {
+		return version;
+	}
+
+	public boolean isFailed() {
+		return null != failureMessage;
+	}
+
+	public String getFailureMessage() {
+		return failureMessage;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkItemResult [index=" + index + ", type=" + type + ", id=" + id + ", version=" + version + (isFailed() ? ", failure=" + failureMessage : "") + "]";
+	}
+}
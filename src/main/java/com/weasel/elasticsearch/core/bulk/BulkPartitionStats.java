@@ -0,0 +1,64 @@
+package com.weasel.elasticsearch.core.bulk;
+
+/**
+ * 分区bulk中单个分区(分片或节点)的统计
+ * 
+ * @author Dylan
+ */
+public class BulkPartitionStats {
+
+	private final String partition;
+	private final int actions;
+	private final long bytes;
+	private final long tookInMillis;
+	private final int failed;
+	private final String failureMessage;
+
+	public BulkPartitionStats(String partition, int actions, long bytes, long tookInMillis, int failed, String failureMessage) {
+		this.partition = partition;
+		this.actions = actions;
+		this.bytes = bytes;
+		this.tookInMillis = tookInMillis;
+		this.failed = failed;
+		this.failureMessage = failureMessage;
+	}
+
+	/**
+	 * @return "index[shard]" or the node id, depending on the dispatch mode
+	 */
+	public String getPartition() {
+		return partition;
+	}
+
+	public int getActions() {
+		return actions;
+	}
+
+	public long getBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return round trip time of the sub-bulk measured on the client
+	 */
+	public long getTookInMillis() {
+		return tookInMillis;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return failure of the whole sub-bulk, null if it was executed
+	 */
+	public String getFailureMessage() {
+		return failureMessage;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkPartitionStats [partition=" + partition + ", actions=" + actions + ", bytes=" + bytes + ", tookInMillis=" + tookInMillis + ", failed="
+				+ failed + (null == failureMessage ? "" : ", failure=" + failureMessage) + "]";
+	}
+}
@@ -0,0 +1,74 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.concurrent.TimeUnit;
+
+import org.springframework.util.Assert;
+
+import com.weasel.elasticsearch.core.ElasticsearchRepository;
+
+/**
+ * @author Dylan
+ */
+public class BulkProcessorBuilder {
+
+	private final ElasticsearchRepository repository;
+	private int bulkActions = 1000;
+	private long bulkSize = 5 * 1024 * 1024;
+	private long flushInterval = -1;
+	private int concurrentRequests = 1;
+	private BulkProcessorListener listener;
+	private String name;
+
+	public BulkProcessorBuilder(ElasticsearchRepository repository) {
+		Assert.notNull(repository, "repository must not be null");
+		this.repository = repository;
+	}
+
+	/**
+	 * flush once this many operations are buffered, -1 to disable
+	 */
+	public BulkProcessorBuilder withBulkActions(int bulkActions) {
+		this.bulkActions = bulkActions;
+		return this;
+	}
+
+	/**
+	 * flush once the buffered operations reach this estimated size in bytes, -1 to disable
+	 */
+	public BulkProcessorBuilder withBulkSize(long bulkSize) {
+		this.bulkSize = bulkSize;
+		return this;
+	}
+
+	/**
+	 * flush whatever is buffered at a fixed interval, not set (or -1) to disable
+	 */
+	public BulkProcessorBuilder withFlushInterval(long interval, TimeUnit unit) {
+		this.flushInterval = interval < 0 ? -1 : unit.toMillis(interval);
+		return this;
+	}
+
+	/**
+	 * number of bulk requests allowed in flight at once. 0 sends every bulk synchronously on the thread which filled
+	 * it. When all slots are busy the producer which fills the next bulk blocks until one completes.
+	 */
+	public BulkProcessorBuilder withConcurrentRequests(int concurrentRequests) {
+		this.concurrentRequests = concurrentRequests;
+		return this;
+	}
+
+	public BulkProcessorBuilder withListener(BulkProcessorListener listener) {
+		this.listener = listener;
+		return this;
+	}
+
+	public BulkProcessorBuilder withName(String name) {
+		this.name = name;
+		return this;
+	}
+
+	public ElasticsearchBulkProcessor build() {
+		Assert.isTrue(concurrentRequests >= 0, "concurrentRequests must be >= 0");
+		return new ElasticsearchBulkProcessor(repository, listener, name, bulkActions, bulkSize, flushInterval, concurrentRequests);
+	}
+}
@@ -0,0 +1,34 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+
+/**
+ * 批量处理器的回调,afterBulk在发送线程或es的响应线程中执行,不要在回调中做耗时操作
+ * 
+ * @author Dylan
+ */
+public interface BulkProcessorListener {
+
+	/**
+	 * @param executionId
+	 * @param request
+	 */
+	void beforeBulk(long executionId, BulkRequest request);
+
+	/**
+	 * @param executionId
+	 * @param request
+	 * @param response
+	 */
+	void afterBulk(long executionId, BulkRequest request, BulkResponse response);
+
+	/**
+	 * the whole bulk request failed (connection error, interrupted...)
+	 * 
+	 * @param executionId
+	 * @param request
+	 * @param failure
+	 */
+	void afterBulk(long executionId, BulkRequest request, Throwable failure);
+}
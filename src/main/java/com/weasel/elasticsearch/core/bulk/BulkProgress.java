@@ -0,0 +1,76 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * 批量写入的进度快照
+ * 
+ * @author Dylan
+ */
+public class BulkProgress {
+
+	private final long documents;
+	private final long failed;
+	private final long bytes;
+	private final long bulks;
+	private final long elapsedMillis;
+	private final Map<String, String> failedDocuments;
+
+	public BulkProgress(long documents, long failed, long bytes, long bulks, long elapsedMillis, Map<String, String> failedDocuments) {
+		this.documents = documents;
+		this.failed = failed;
+		this.bytes = bytes;
+		this.bulks = bulks;
+		this.elapsedMillis = elapsedMillis;
+		this.failedDocuments = Collections.unmodifiableMap(failedDocuments);
+	}
+
+	/**
+	 * @return documents acknowledged by elasticsearch so far, failed ones included
+	 */
+	public long getDocuments() {
+		return documents;
+	}
+
+	public long getFailed() {
+		return failed;
+	}
+
+	/**
+	 * @return estimated request bytes sent so far
+	 */
+	public long getBytes() {
+		return bytes;
+	}
+
+	public long getBulks() {
+		return bulks;
+	}
+
+	public long getElapsedMillis() {
+		return elapsedMillis;
+	}
+
+	public double getDocumentsPerSecond() {
+		return elapsedMillis == 0 ? 0 : documents * 1000d / elapsedMillis;
+	}
+
+	public double getBytesPerSecond() {
+		return elapsedMillis == 0 ? 0 : bytes * 1000d / elapsedMillis;
+	}
+
+	/**
+	 * @return id -> failure message, only the first {@link BulkProgressTracker#MAX_RETAINED_FAILURES} failures are
+	 *         retained
+	 */
+	public Map<String, String> getFailedDocuments() {
+		return failedDocuments;
+	}
+
+	@Override
+	public String toString() {
+		return "BulkProgress [documents=" + documents + ", failed=" + failed + ", bytes=" + bytes + ", bulks=" + bulks + ", elapsedMillis=" + elapsedMillis
+				+ ", documentsPerSecond=" + (long) getDocumentsPerSecond() + "]";
+	}
+}
@@ -0,0 +1,14 @@
+package com.weasel.elasticsearch.core.bulk;
+
+/**
+ * @author Dylan
+ */
+public interface BulkProgressListener {
+
+	/**
+	 * called after every completed bulk, possibly from an elasticsearch response thread
+	 * 
+	 * @param progress
+	 */
+	void onProgress(BulkProgress progress);
+}
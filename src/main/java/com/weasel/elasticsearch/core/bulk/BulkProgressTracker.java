@@ -0,0 +1,82 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+
+/**
+ * 统计批量处理器的吞吐量和失败,失败信息最多保留{@link #MAX_RETAINED_FAILURES}条,保证内存有界
+ * 
+ * @author Dylan
+ */
+public class BulkProgressTracker implements BulkProcessorListener {
+
+	public static final int MAX_RETAINED_FAILURES = 1000;
+
+	private final BulkProgressListener listener;
+	private final long start = System.currentTimeMillis();
+	private final AtomicLong documents = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+	private final AtomicLong bytes = new AtomicLong();
+	private final AtomicLong bulks = new AtomicLong();
+	private final Map<String, String> failedDocuments = new LinkedHashMap<String, String>();
+
+	public BulkProgressTracker(BulkProgressListener listener) {
+		this.listener = listener;
+	}
+
+	@Override
+	public void beforeBulk(long executionId, BulkRequest request) {
+	}
+
+	@Override
+	public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+		for (BulkItemResponse item : response.getItems()) {
+			if (item.isFailed()) {
+				failed(item.getId(), item.getFailureMessage());
+			}
+		}
+		completed(request);
+	}
+
+	@Override
+	public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+		failed.addAndGet(request.numberOfActions());
+		synchronized (failedDocuments) {
+			if (failedDocuments.size() < MAX_RETAINED_FAILURES) {
+				failedDocuments.put("bulk-" + executionId, String.valueOf(failure));
+			}
+		}
+		completed(request);
+	}
+
+	public BulkProgress getProgress() {
+		Map<String, String> failures;
+		synchronized (failedDocuments) {
+			failures = new LinkedHashMap<String, String>(failedDocuments);
+		}
+		return new BulkProgress(documents.get(), failed.get(), bytes.get(), bulks.get(), System.currentTimeMillis() - start, failures);
+	}
+
+	private void failed(String id, String message) {
+		failed.incrementAndGet();
+		synchronized (failedDocuments) {
+			if (failedDocuments.size() < MAX_RETAINED_FAILURES) {
+				failedDocuments.put(id, message);
+			}
+		}
+	}
+
+	private void completed(BulkRequest request) {
+		documents.addAndGet(request.numberOfActions());
+		bytes.addAndGet(request.estimatedSizeInBytes());
+		bulks.incrementAndGet();
+		if (null != listener) {
+			listener.onProgress(getProgress());
+		}
+	}
+}
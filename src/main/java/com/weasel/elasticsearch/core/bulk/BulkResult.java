@@ -0,0 +1,84 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkResponse;
+
+/**
+ * 分批发送的bulk操作的汇总结果,按提交顺序保存每个操作的结果
+ * 
+ * @author Dylan
+ */
+public class BulkResult {
+
+	private final List<BulkItemResult> items = new ArrayList<BulkItemResult>();
+	private int failed = 0;
+	private long tookInMillis = 0;
+
+	public BulkResult add(BulkResponse response) {
+		for (BulkItemResponse item : response.getItems()) {
+			add(BulkItemResult.of(item));
+		}
+		tookInMillis += response.getTookInMillis();
+		return this;
+	}
+
+	/**
+	 * @param tookInMillis server side took time of a bulk whose items are added one by one
+	 */
+	public BulkResult addTookInMillis(long tookInMillis) {
+		this.tookInMillis += tookInMillis;
+		return this;
+	}
+
+	public BulkResult add(BulkItemResult item) {
+		items.add(item);
+		if (item.isFailed()) {
+			failed++;
+		}
+		return this;
+	}
+
+	public List<BulkItemResult> getItems() {
+		return Collections.unmodifiableList(items);
+	}
+
+	public int getSucceeded() {
+		return items.size() - failed;
+	}
+
+	public int getFailed() {
+		return failed;
+	}
+
+	public boolean hasFailures() {
+		return failed > 0;
+	}
+
+	/**
+	 * @return id -> failure message of the failed items
+	 */
+	public Map<String, String> getFailedDocuments() {
+		Map<String, String> failedDocuments = new LinkedHashMap<String, String>();
+		if (failed > 0) {
+			for (BulkItemResult item : items) {
+				if (item.isFailed()) {
+					failedDocuments.put(item.getId(), item.getFailureMessage());
+				}
+			}
+		}
+		return failedDocuments;
+	}
+
+	/**
+	 * @return sum of the server side took time of the bulks
+	 */
+	public long getTookInMillis() {
+		return tookInMillis;
+	}
+}
@@ -0,0 +1,155 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import org.springframework.util.Assert;
+
+/**
+ * bulk失败项的重试策略:只重发失败的文档,指数退避加随机抖动.
+ * 被拒绝(bulk线程池满)、超时、分片暂不可用等视为可重试,其余(如mapping错误)视为永久失败,直接交给{@link DeadLetterHandler}.
+ * 按失败信息中各层异常的类名判断;cluster block只有SERVICE_UNAVAILABLE级别(如state not recovered、no master)可重试,只读、禁写等block视为永久失败
+ * 
+ * @author Dylan
+ */
+public class BulkRetryPolicy {
+
+	private static final Set<String> RETRYABLE_FAILURES = new HashSet<String>(Arrays.asList("EsRejectedExecutionException",
+			"RejectedExecutionException", "UnavailableShardsException", "NoShardAvailableActionException", "ElasticsearchTimeoutException",
+			"ElasticSearchTimeoutException", "TimeoutException", "ReceiveTimeoutTransportException", "NodeDisconnectedException",
+			"NodeNotConnectedException", "ConnectTransportException", "NoNodeAvailableException"));
+	private static final String CLUSTER_BLOCK_FAILURE = "ClusterBlockException";
+	private static final String TRANSIENT_BLOCK_STATUS = "SERVICE_UNAVAILABLE";
+	/** elasticsearch joins the causes of a failure message with this */
+	private static final String NESTED = "; nested: ";
+
+	private final Random random = new Random();
+	private int maxRetries = 3;
+	private long initialBackoff = 100;
+	private long maxBackoff = 10000;
+	private double jitter = 0.5;
+	private DeadLetterHandler deadLetterHandler;
+
+	/**
+	 * @param maxRetries retries after the first attempt
+	 */
+	public BulkRetryPolicy withMaxRetries(int maxRetries) {
+		Assert.isTrue(maxRetries >= 0, "maxRetries must be >= 0");
+		this.maxRetries = maxRetries;
+		return this;
+	}
+
+	/**
+	 * @param initialBackoff delay in milliseconds before the first retry, doubled for every retry
+	 */
+	public BulkRetryPolicy withInitialBackoff(long initialBackoff) {
+		this.initialBackoff = initialBackoff;
+		return this;
+	}
+
+	/**
+	 * @param maxBackoff upper bound of the delay in milliseconds
+	 */
+	public BulkRetryPolicy withMaxBackoff(long maxBackoff) {
+		this.maxBackoff = maxBackoff;
+		return this;
+	}
+
+	/**
+	 * @param jitter fraction (0 - 1) of the delay which is randomized, so rejected producers don't retry in lockstep
+	 */
+	public BulkRetryPolicy withJitter(double jitter) {
+		Assert.isTrue(jitter >= 0 && jitter <= 1, "jitter must be between 0 and 1");
+		this.jitter = jitter;
+		return this;
+	}
+
+	public BulkRetryPolicy withDeadLetterHandler(DeadLetterHandler deadLetterHandler) {
+		this.deadLetterHandler = deadLetterHandler;
+		return this;
+	}
+
+	public int getMaxRetries() {
+		return maxRetries;
+	}
+
+	public DeadLetterHandler getDeadLetterHandler() {
+		return deadLetterHandler;
+	}
+
+	/**
+	 * @param retry 0 for the first retry
+	 * @return delay in milliseconds
+	 */
+	public long backoff(int retry) {
+		long delay = initialBackoff << Math.min(retry, 30);
+		if (delay <= 0 || delay > maxBackoff) {
+			delay = maxBackoff;
+		}
+		double randomized;
+		synchronized (random) {
+			randomized = jitter * random.nextDouble();
+		}
+		return (long) (delay * (1 - randomized));
+	}
+
+	/**
+	 * @param failureMessage failure message of a bulk item, e.g. "RemoteTransportException[...]; nested: EsRejectedExecutionException[...]; "
+	 * @return
+	 */
+	public boolean isRetryable(String failureMessage) {
+		if (null == failureMessage) {
+			return false;
+		}
+		for (String failure : failureMessage.split(NESTED)) {
+			int bracket = failure.indexOf('[');
+			String name = (bracket < 0 ? failure : failure.substring(0, bracket)).trim();
+			name = name.substring(name.lastIndexOf('.') + 1);
+			if (RETRYABLE_FAILURES.contains(name) || (CLUSTER_BLOCK_FAILURE.equals(name) && isTransientBlock(failure))) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @param failure e.g. "ClusterBlockException[blocked by: [SERVICE_UNAVAILABLE/1/state not recovered / initialized];]"
+	 * @return true if every block is SERVICE_UNAVAILABLE
+	 */
+	private boolean isTransientBlock(String failure) {
+		boolean blocked = false;
+		for (int start = failure.indexOf('['); start >= 0; start = failure.indexOf('[', start + 1)) {
+			int slash = failure.indexOf('/', start);
+			if (slash < 0) {
+				break;
+			}
+			String status = failure.substring(start + 1, slash);
+			if (!status.matches("[A-Z_]+")) {
+				continue;
+			}
+			if (!TRANSIENT_BLOCK_STATUS.equals(status)) {
+				return false;
+			}
+			blocked = true;
+		}
+		return blocked;
+	}
+
+	/**
+	 * @param failure failure of the whole bulk request
+	 * @return
+	 */
+	public boolean isRetryable(Throwable failure) {
+		for (Throwable current = failure; null != current; current = current.getCause()) {
+			if (isRetryable(current.getClass().getSimpleName() + "[" + current.getMessage() + "]")) {
+				return true;
+			}
+			if (current.getCause() == current) {
+				break;
+			}
+		}
+		return false;
+	}
+}
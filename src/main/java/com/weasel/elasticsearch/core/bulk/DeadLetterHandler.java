@@ -0,0 +1,19 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import com.weasel.elasticsearch.core.query.IndexQuery;
+
+/**
+ * 处理最终写入失败的文档(永久性错误或重试次数用完)
+ * 
+ * @author Dylan
+ */
+public interface DeadLetterHandler {
+
+	/**
+	 * @param query
+	 * @param index the index the document was sent to
+	 * @param type
+	 * @param failureMessage
+	 */
+	void handle(IndexQuery query, String index, String type, String failureMessage);
+}
@@ -0,0 +1,286 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import static org.elasticsearch.client.Requests.deleteRequest;
+
+import java.io.Closeable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.action.delete.DeleteRequest;
+import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.action.update.UpdateRequest;
+import org.elasticsearch.client.Client;
+
+import com.weasel.elasticsearch.core.ElasticsearchRepository;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.core.query.UpdateQuery;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 异步批量处理器.线程安全,可以被多个线程共享. 缓存的操作数、估算字节数或者定时器任一达到阈值时发送一个bulk请求,
+ * 同时最多有concurrentRequests个bulk在发送中,超出时填满下一个bulk的生产者线程会被阻塞,直到有bulk完成.
+ *
+ * <p>
+ * 用完必须调用{@link #close()},否则缓存中的操作会丢失
+ *
+ * @author Dylan
+ */
+public class ElasticsearchBulkProcessor implements Closeable {
+
+	private final ElasticsearchRepository repository;
+	private final Client es;
+	private final BulkProcessorListener listener;
+	private final int bulkActions;
+	private final long bulkSize;
+	private final int concurrentRequests;
+	private final Semaphore semaphore;
+	private final ScheduledExecutorService scheduler;
+	private final AtomicLong executionIdGen = new AtomicLong();
+
+	private BulkRequest bulkRequest = new BulkRequest();
+	private volatile boolean closed = false;
+
+	ElasticsearchBulkProcessor(ElasticsearchRepository repository, BulkProcessorListener listener, final String name, int bulkActions, long bulkSize,
+			long flushInterval, int concurrentRequests) {
+		this.repository = repository;
+		this.es = repository.getEsClient();
+		this.listener = null == listener ? NO_OP_LISTENER : listener;
+		this.bulkActions = bulkActions;
+		this.bulkSize = bulkSize;
+		this.concurrentRequests = concurrentRequests;
+		this.semaphore = new Semaphore(concurrentRequests > 0 ? concurrentRequests : 1);
+		if (flushInterval > 0) {
+			this.scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, "bulk-processor-flush" + (null == name ? "" : "[" + name + "]"));
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			this.scheduler.scheduleWithFixedDelay(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						flush();
+					} catch (IllegalStateException e) {
+						// closed concurrently
+					}
+				}
+			}, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+		} else {
+			this.scheduler = null;
+		}
+	}
+
+	/**
+	 * @param query
+	 * @return
+	 */
+	public ElasticsearchBulkProcessor add(IndexQuery query) {
+		IndexRequest request = repository.prepareIndex(query).request();
+		synchronized (this) {
+			ensureOpen();
+			bulkRequest.add(request);
+			executeIfNeeded();
+		}
+		return this;
+	}
+
+	/**
+	 * @param query
+	 * @return
+	 */
+	public ElasticsearchBulkProcessor add(UpdateQuery query) {
+		UpdateRequest request = repository.prepareUpdate(query).request();
+		synchronized (this) {
+			ensureOpen();
+			bulkRequest.add(request);
+			executeIfNeeded();
+		}
+		return this;
+	}
+
+	/**
+	 * @param indexName
+	 * @param type
+	 * @param id
+	 * @return
+	 */
+	public ElasticsearchBulkProcessor delete(String indexName, String type, String id) {
+		DeleteRequest request = deleteRequest(indexName).type(type).id(id);
+		repository.evict(indexName, type, id);
+		synchronized (this) {
+			ensureOpen();
+			bulkRequest.add(request);
+			executeIfNeeded();
+		}
+		return this;
+	}
+
+	/**
+	 * @param clazz
+	 * @param id
+	 * @return
+	 */
+	public ElasticsearchBulkProcessor delete(Class<?> clazz, String id) {
+		return delete(repository.getIndexName(clazz), repository.getType(clazz), id);
+	}
+
+	/**
+	 * send whatever is buffered now
+	 */
+	public synchronized void flush() {
+		ensureOpen();
+		if (bulkRequest.numberOfActions() > 0) {
+			execute();
+		}
+	}
+
+	/**
+	 * flush the buffered operations and wait (without limit) for every in-flight bulk to complete
+	 */
+	@Override
+	public void close() {
+		try {
+			awaitClose(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * flush the buffered operations and wait for the in-flight bulks to complete
+	 *
+	 * @param timeout
+	 * @param unit
+	 * @return false if the timeout elapsed before all bulks completed
+	 * @throws InterruptedException
+	 */
+	public boolean awaitClose(long timeout, TimeUnit unit) throws InterruptedException {
+		synchronized (this) {
+			if (closed) {
+				return true;
+			}
+			if (null != scheduler) {
+				scheduler.shutdownNow();
+			}
+			if (bulkRequest.numberOfActions() > 0) {
+				execute();
+			}
+			closed = true;
+		}
+		if (concurrentRequests > 0 && semaphore.tryAcquire(concurrentRequests, timeout, unit)) {
+			semaphore.release(concurrentRequests);
+			return true;
+		}
+		return concurrentRequests == 0;
+	}
+
+	/**
+	 * @return number of bulk requests currently in flight
+	 */
+	public int getInFlightRequests() {
+		return concurrentRequests == 0 ? 0 : concurrentRequests - semaphore.availablePermits();
+	}
+
+	private void ensureOpen() {
+		if (closed) {
+			throw new IllegalStateException("bulk processor already closed");
+		}
+	}
+
+	private void executeIfNeeded() {
+		int actions = bulkRequest.numberOfActions();
+		if ((bulkActions != -1 && actions >= bulkActions) || (bulkSize != -1 && bulkRequest.estimatedSizeInBytes() >= bulkSize)) {
+			execute();
+		}
+	}
+
+	/**
+	 * must be called while holding the lock, so a producer blocked on the semaphore holds back the other producers too
+	 */
+	private void execute() {
+		final BulkRequest request = this.bulkRequest;
+		final long executionId = executionIdGen.incrementAndGet();
+		this.bulkRequest = new BulkRequest();
+
+		if (concurrentRequests == 0) {
+			listener.beforeBulk(executionId, request);
+			BulkResponse response;
+			try {
+				response = es.bulk(request).actionGet();
+			} catch (Exception e) {
+				repository.evict(request);
+				listener.afterBulk(executionId, request, e);
+				return;
+			}
+			repository.evict(request);
+			listener.afterBulk(executionId, request, response);
+			return;
+		}
+
+		try {
+			semaphore.acquire();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			listener.afterBulk(executionId, request, new ElasticsearchException("interrupted while waiting for a free bulk slot", e));
+			return;
+		}
+		boolean sent = false;
+		try {
+			listener.beforeBulk(executionId, request);
+			es.bulk(request, new ActionListener<BulkResponse>() {
+				@Override
+				public void onResponse(BulkResponse response) {
+					try {
+						// the operations were evicted when added, a read racing with the bulk may have cached them again
+						repository.evict(request);
+						listener.afterBulk(executionId, request, response);
+					} finally {
+						semaphore.release();
+					}
+				}
+
+				@Override
+				public void onFailure(Throwable e) {
+					try {
+						repository.evict(request);
+						listener.afterBulk(executionId, request, e);
+					} finally {
+						semaphore.release();
+					}
+				}
+			});
+			sent = true;
+		} catch (Exception e) {
+			listener.afterBulk(executionId, request, e);
+		} finally {
+			if (!sent) {
+				semaphore.release();
+			}
+		}
+	}
+
+	private static final BulkProcessorListener NO_OP_LISTENER = new BulkProcessorListener() {
+
+		@Override
+		public void beforeBulk(long executionId, BulkRequest request) {
+		}
+
+		@Override
+		public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+		}
+
+		@Override
+		public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+		}
+	};
+}
@@ -0,0 +1,70 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.springframework.util.Assert;
+
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+import com.weasel.helper.JsonHelper;
+
+/**
+ * 把失败的文档以每行一个json的格式追加到本地文件,字段为index,type,id,routing,version,failure,source
+ * 
+ * @author Dylan
+ */
+public class FileDeadLetterHandler implements DeadLetterHandler {
+
+	private static final byte[] LINE_SEPARATOR = { '\n' };
+
+	private final File file;
+
+	public FileDeadLetterHandler(File file) {
+		Assert.notNull(file, "file must not be null");
+		this.file = file;
+	}
+
+	public FileDeadLetterHandler(String path) {
+		this(new File(path));
+	}
+
+	@Override
+	public synchronized void handle(IndexQuery query, String index, String type, String failureMessage) {
+		OutputStream out = null;
+		try {
+			out = new FileOutputStream(file, true);
+			XContentBuilder builder = XContentFactory.jsonBuilder(out);
+			builder.startObject()
+				   .field("index", index)
+				   .field("type", type)
+				   .field("id", query.getId())
+				   .field("routing", query.getRouting())
+				   .field("version", query.getVersion())
+				   .field("failure", failureMessage)
+				   .field("source", null != query.getSource() ? query.getSource().toUtf8() : JsonHelper.toJsonString(query.getObject()))
+				   .endObject();
+			// flush, not close: closing the generator would close the file as well
+			builder.flush();
+			out.write(LINE_SEPARATOR);
+		} catch (IOException e) {
+			throw new ElasticsearchException("failed to write dead letter [id: " + query.getId() + "] to [" + file + "]", e);
+		} finally {
+			if (null != out) {
+				try {
+					out.close();
+				} catch (IOException e) {
+					// ignore
+				}
+			}
+		}
+	}
+
+	public File getFile() {
+		return file;
+	}
+}
@@ -0,0 +1,21 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import org.elasticsearch.common.logging.ESLogger;
+import org.elasticsearch.common.logging.Loggers;
+
+import com.weasel.elasticsearch.core.query.IndexQuery;
+
+/**
+ * 只把失败的文档记录到日志(error级别),文档内容不保留.没有其他处理方式时作为最低限度的报告
+ * 
+ * @author Dylan
+ */
+public class LoggingDeadLetterHandler implements DeadLetterHandler {
+
+	private static final ESLogger logger = Loggers.getLogger(LoggingDeadLetterHandler.class);
+
+	@Override
+	public void handle(IndexQuery query, String index, String type, String failureMessage) {
+		logger.error("failed to write document [{}/{}/{}]: {}", index, type, query.getId(), failureMessage);
+	}
+}
@@ -0,0 +1,37 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 分区bulk的结果.items与其它bulk一样按提交顺序排列,partitions按分区完成的顺序排列
+ * 
+ * @author Dylan
+ */
+public class PartitionedBulkResult extends BulkResult {
+
+	private final Map<String, BulkPartitionStats> partitions = new LinkedHashMap<String, BulkPartitionStats>();
+
+	public PartitionedBulkResult addPartition(BulkPartitionStats stats) {
+		partitions.put(stats.getPartition(), stats);
+		return this;
+	}
+
+	public Map<String, BulkPartitionStats> getPartitions() {
+		return Collections.unmodifiableMap(partitions);
+	}
+
+	/**
+	 * @return the partition with the longest round trip, null if there is none
+	 */
+	public BulkPartitionStats getSlowestPartition() {
+		BulkPartitionStats slowest = null;
+		for (BulkPartitionStats stats : partitions.values()) {
+			if (null == slowest || stats.getTookInMillis() > slowest.getTookInMillis()) {
+				slowest = stats;
+			}
+		}
+		return slowest;
+	}
+}
@@ -0,0 +1,61 @@
+package com.weasel.elasticsearch.core.bulk;
+
+import org.elasticsearch.cluster.ClusterState;
+import org.elasticsearch.cluster.metadata.IndexMetaData;
+import org.elasticsearch.cluster.routing.IndexRoutingTable;
+import org.elasticsearch.cluster.routing.ShardRouting;
+
+/**
+ * 计算文档所在的分片(或主分片所在节点).使用与elasticsearch默认路由相同的djb hash,
+ * 如果索引配置了其他hash函数,分组只会变得不均衡,不影响正确性
+ * 
+ * @author Dylan
+ */
+public class ShardPartitioner {
+
+	private final ClusterState state;
+	private final BulkDispatchMode mode;
+
+	public ShardPartitioner(ClusterState state, BulkDispatchMode mode) {
+		this.state = state;
+		this.mode = mode;
+	}
+
+	/**
+	 * @param index
+	 * @param id
+	 * @param routing
+	 * @return the partition key: "index[shard]" or the node id
+	 */
+	public String partition(String index, String id, String routing) {
+		IndexMetaData indexMetaData = state.metaData().index(index);
+		String effectiveRouting = null != routing ? routing : id;
+		if (null == indexMetaData || null == effectiveRouting) {
+			// alias, index not created yet, or auto generated id: let elasticsearch route it
+			return index + "[*]";
+		}
+		int shard = shardId(effectiveRouting, indexMetaData.numberOfShards());
+		if (BulkDispatchMode.NODE == mode) {
+			IndexRoutingTable routingTable = state.routingTable().index(index);
+			if (null != routingTable) {
+				ShardRouting primary = routingTable.shard(shard).primaryShard();
+				if (null != primary && primary.assignedToNode()) {
+					return primary.currentNodeId();
+				}
+			}
+		}
+		return index + "[" + shard + "]";
+	}
+
+	static int shardId(String routing, int numberOfShards) {
+		return Math.abs(djbHash(routing) % numberOfShards);
+	}
+
+	static int djbHash(String value) {
+		long hash = 5381;
+		for (int i = 0; i < value.length(); i++) {
+			hash = ((hash << 5) + hash) + value.charAt(i);
+		}
+		return (int) hash;
+	}
+}
@@ -0,0 +1,333 @@
+package com.weasel.elasticsearch.core.cache;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.springframework.util.Assert;
+
+/**
+ * 按id缓存文档_source的本地缓存,放在get请求前面.容量有限,按LRU淘汰,条目在ttl之后过期.
+ * 缓存的是序列化后的字节,每次读取都重新反序列化,调用方修改返回的实体不会影响缓存;
+ * {@link Storage#OFF_HEAP}时字节保存在堆外:direct内存按段分配,切成固定大小的块,条目淘汰后块被复用,不会为每个条目分配direct buffer.
+ * 堆外内存随缓存的峰值大小增长,之后保留复用.
+ * 
+ * <p>
+ * 只有本进程的写操作会使条目失效,其它进程的写入在ttl之内可能读不到.
+ * 失效时留下一个墓碑,记录失效序号和写入的版本:读取前用{@link #stamp()}取得序号,在读取期间失效过的文档或者比墓碑旧的版本不会被放进缓存,
+ * 所以与写操作并发的慢读不会把旧文档重新放回去.墓碑同样按maxEntries淘汰,被淘汰墓碑之前开始的读取都不再缓存
+ * 
+ * @author Dylan
+ */
+public class NearCache {
+
+	public enum Storage {
+		HEAP, OFF_HEAP
+	}
+
+	private final int maxEntries;
+	private final long ttl;
+	private final Slab slab;
+	private final Map<String, Entry> entries;
+	private final Map<String, Tombstone> tombstones;
+	private long sequence;
+	private long floor;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong evictions = new AtomicLong();
+
+	/**
+	 * @param maxEntries
+	 * @param ttl milliseconds an entry stays valid, 0 for no expiry
+	 * @param storage
+	 */
+	public NearCache(final int maxEntries, long ttl, Storage storage) {
+		Assert.isTrue(maxEntries > 0, "maxEntries must be positive");
+		Assert.isTrue(ttl >= 0, "ttl must not be negative");
+		Assert.notNull(storage, "storage must not be null");
+		this.maxEntries = maxEntries;
+		this.ttl = ttl;
+		this.slab = Storage.OFF_HEAP == storage ? new Slab() : null;
+		this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+				if (size() > NearCache.this.maxEntries) {
+					evictions.incrementAndGet();
+					eldest.getValue().release();
+					return true;
+				}
+				return false;
+			}
+		};
+		this.tombstones = new LinkedHashMap<String, Tombstone>() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Tombstone> eldest) {
+				if (size() > NearCache.this.maxEntries) {
+					floor = eldest.getValue().sequence;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * take before reading the document from elasticsearch and pass to {@link #put(String, long, byte[], long)}
+	 * 
+	 * @return the current invalidation sequence
+	 */
+	public long stamp() {
+		synchronized (entries) {
+			return sequence;
+		}
+	}
+
+	/**
+	 * @param id
+	 * @return a copy of the cached source, null if it is not cached or expired
+	 */
+	public byte[] get(String id) {
+		byte[] source;
+		synchronized (entries) {
+			Entry entry = entries.get(id);
+			if (null != entry && entry.isExpired()) {
+				entries.remove(id);
+				entry.release();
+				entry = null;
+			}
+			// copied under the lock, the blocks of an off heap entry are reused once it is dropped
+			source = null == entry ? null : entry.source();
+		}
+		if (null == source) {
+			misses.incrementAndGet();
+			return null;
+		}
+		hits.incrementAndGet();
+		return source;
+	}
+
+	/**
+	 * @param id
+	 * @return version of the cached document, -1 if it is not cached
+	 */
+	public long getVersion(String id) {
+		synchronized (entries) {
+			Entry entry = entries.get(id);
+			return null == entry || entry.isExpired() ? -1 : entry.version;
+		}
+	}
+
+	/**
+	 * cache the source of a document read from elasticsearch. A cached newer version is kept, so a slow read does
+	 * not replace the result of a faster one; the source is dropped if the document was invalidated after the read
+	 * started or is older than the version last written
+	 * 
+	 * @param id
+	 * @param version
+	 * @param source
+	 * @param stamp {@link #stamp()} taken before the read
+	 * @return false if the source was stale and not cached
+	 */
+	public boolean put(String id, long version, byte[] source, long stamp) {
+		synchronized (entries) {
+			Tombstone tombstone = tombstones.get(id);
+			if (stamp < floor || (null != tombstone && (tombstone.sequence > stamp || tombstone.version > version))) {
+				return false;
+			}
+			Entry cached = entries.get(id);
+			if (null != cached && !cached.isExpired() && cached.version > version) {
+				return false;
+			}
+			Entry previous = entries.put(id, new Entry(version, source, 0 == ttl ? Long.MAX_VALUE : System.currentTimeMillis() + ttl));
+			if (null != previous) {
+				previous.release();
+			}
+			return true;
+		}
+	}
+
+	/**
+	 * @param id
+	 * @see #invalidate(String, long)
+	 */
+	public void invalidate(String id) {
+		invalidate(id, -1);
+	}
+
+	/**
+	 * drop the cached document and leave a tombstone, so reads which started before are not cached. Call it again
+	 * once the write completed
+	 * 
+	 * @param id
+	 * @param version the version written, -1 if it is unknown
+	 */
+	public void invalidate(String id, long version) {
+		synchronized (entries) {
+			Entry removed = entries.remove(id);
+			if (null != removed) {
+				removed.release();
+			}
+			Tombstone previous = tombstones.remove(id);
+			tombstones.put(id, new Tombstone(++sequence, null == previous ? version : Math.max(previous.version, version)));
+		}
+	}
+
+	/**
+	 * drop every cached document, reads which started before are not cached
+	 */
+	public void clear() {
+		synchronized (entries) {
+			for (Entry entry : entries.values()) {
+				entry.release();
+			}
+			entries.clear();
+			tombstones.clear();
+			floor = ++sequence;
+		}
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	public long getHits() {
+		return hits.get();
+	}
+
+	public long getMisses() {
+		return misses.get();
+	}
+
+	public long getEvictions() {
+		return evictions.get();
+	}
+
+	public double getHitRatio() {
+		long total = hits.get() + misses.get();
+		return 0 == total ? 0 : (double) hits.get() / total;
+	}
+
+	private static class Tombstone {
+		private final long sequence;
+		private final long version;
+
+		Tombstone(long sequence, long version) {
+			this.sequence = sequence;
+			this.version = version;
+		}
+	}
+
+	/**
+	 * entries are created, read and released with the lock of the cache held
+	 */
+	private class Entry {
+		private final long version;
+		private final long expires;
+		private final int length;
+		private final byte[] heap;
+		private final int[] blocks;
+
+		Entry(long version, byte[] source, long expires) {
+			this.version = version;
+			this.expires = expires;
+			this.length = source.length;
+			if (null != slab) {
+				this.blocks = slab.write(source);
+				this.heap = null;
+			} else {
+				this.heap = source.clone();
+				this.blocks = null;
+			}
+		}
+
+		boolean isExpired() {
+			return System.currentTimeMillis() > expires;
+		}
+
+		byte[] source() {
+			if (null != heap) {
+				return heap.clone();
+			}
+			byte[] source = new byte[length];
+			slab.read(blocks, source);
+			return source;
+		}
+
+		void release() {
+			if (null != blocks) {
+				slab.release(blocks);
+			}
+		}
+	}
+
+	/**
+	 * direct memory of the off heap entries: segments of fixed size blocks, a source takes as many blocks as it needs
+	 * and returns them to the free list when its entry is dropped. Not thread safe, used with the lock of the cache held
+	 */
+	private static class Slab {
+		private static final int BLOCK_SIZE = 512;
+		private static final int SEGMENT_BLOCKS = 2048;
+
+		private final List<ByteBuffer> segments = new ArrayList<ByteBuffer>();
+		private int[] free = new int[SEGMENT_BLOCKS];
+		private int freeCount;
+
+		int[] write(byte[] source) {
+			int[] blocks = new int[(source.length + BLOCK_SIZE - 1) / BLOCK_SIZE];
+			for (int i = 0; i < blocks.length; i++) {
+				blocks[i] = allocate();
+				int offset = i * BLOCK_SIZE;
+				block(blocks[i]).put(source, offset, Math.min(BLOCK_SIZE, source.length - offset));
+			}
+			return blocks;
+		}
+
+		void read(int[] blocks, byte[] target) {
+			for (int i = 0; i < blocks.length; i++) {
+				int offset = i * BLOCK_SIZE;
+				block(blocks[i]).get(target, offset, Math.min(BLOCK_SIZE, target.length - offset));
+			}
+		}
+
+		void release(int[] blocks) {
+			if (freeCount + blocks.length > free.length) {
+				free = Arrays.copyOf(free, Math.max(free.length * 2, freeCount + blocks.length));
+			}
+			for (int block : blocks) {
+				free[freeCount++] = block;
+			}
+		}
+
+		private int allocate() {
+			if (0 == freeCount) {
+				int first = segments.size() * SEGMENT_BLOCKS;
+				segments.add(ByteBuffer.allocateDirect(SEGMENT_BLOCKS * BLOCK_SIZE));
+				for (int i = SEGMENT_BLOCKS - 1; i >= 0; i--) {
+					free[freeCount++] = first + i;
+				}
+			}
+			return free[--freeCount];
+		}
+
+		/**
+		 * @return the segment of the block positioned on it, valid until the next call
+		 */
+		private ByteBuffer block(int block) {
+			ByteBuffer segment = segments.get(block / SEGMENT_BLOCKS);
+			int position = (block % SEGMENT_BLOCKS) * BLOCK_SIZE;
+			segment.limit(position + BLOCK_SIZE);
+			segment.position(position);
+			return segment;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 实体的JavaBean属性,与JsonHelper一样按getter/setter命名(isXxx的布尔属性、与字段不同名的属性).
+ * 编译的读取器和投影都从这里取属性名,保证与文档的key一致
+ *
+ * @author Dylan
+ */
+public final class BeanProperties {
+
+	private BeanProperties() {
+	}
+
+	/**
+	 * @param clazz
+	 * @return the setters of the class and its super classes by property name, read only properties are left out
+	 */
+	public static Map<String, Method> setters(Class<?> clazz) {
+		Map<String, Method> setters = new LinkedHashMap<String, Method>();
+		for (PropertyDescriptor property : properties(clazz)) {
+			if (null != property.getWriteMethod()) {
+				setters.put(property.getName(), property.getWriteMethod());
+			}
+		}
+		return setters;
+	}
+
+	/**
+	 * 带注解的属性可能被JsonHelper(Jackson)改名、忽略或者按别的格式读写,不能按属性名直接绑定
+	 *
+	 * @param clazz
+	 * @return names of the properties with an annotation on the getter, the setter or the field of the same name,
+	 *         in the class or any super class
+	 */
+	public static Set<String> annotated(Class<?> clazz) {
+		Set<String> annotated = new LinkedHashSet<String>();
+		for (PropertyDescriptor property : properties(clazz)) {
+			for (Class<?> current = clazz; null != current && Object.class != current; current = current.getSuperclass()) {
+				if (isAnnotated(declaredField(current, property.getName())) || isAnnotated(declaredMethod(current, property.getReadMethod()))
+						|| isAnnotated(declaredMethod(current, property.getWriteMethod()))) {
+					annotated.add(property.getName());
+					break;
+				}
+			}
+		}
+		return annotated;
+	}
+
+	private static PropertyDescriptor[] properties(Class<?> clazz) {
+		try {
+			return Introspector.getBeanInfo(clazz, Object.class).getPropertyDescriptors();
+		} catch (IntrospectionException e) {
+			throw new ElasticsearchException("failed to introspect " + clazz.getName(), e);
+		}
+	}
+
+	private static AccessibleObject declaredField(Class<?> clazz, String name) {
+		try {
+			return clazz.getDeclaredField(name);
+		} catch (NoSuchFieldException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @return the method of the class which the accessor overrides or is, null if the class does not declare it
+	 */
+	private static AccessibleObject declaredMethod(Class<?> clazz, Method accessor) {
+		if (null == accessor) {
+			return null;
+		}
+		try {
+			return clazz.getDeclaredMethod(accessor.getName(), accessor.getParameterTypes());
+		} catch (NoSuchMethodException e) {
+			return null;
+		}
+	}
+
+	private static boolean isAnnotated(AccessibleObject member) {
+		return null != member && member.getDeclaredAnnotations().length > 0;
+	}
+}
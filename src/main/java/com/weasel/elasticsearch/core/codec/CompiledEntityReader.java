@@ -0,0 +1,431 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.lang.reflect.TypeVariable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.common.xcontent.XContentParser;
+import org.elasticsearch.common.xcontent.XContentParser.Token;
+
+/**
+ * 按实体类型预先编译的反序列化器:JavaBean属性(与JsonHelper一样按setter命名)及其类型转换在编译时解析一次,
+ * 读取时直接从文档的字节流调用setter,不经过中间字符串.只支持字符串、数字、布尔、枚举以及由这些类型组成的嵌套对象,
+ * 含有其他类型(日期、集合、Map、数组等)或者带注解(可能被JsonHelper改名、忽略)属性的实体编译失败,由{@link EntityCodecRegistry}交给JsonHelper处理.
+ * 文档中出现没有setter的key、超出范围或者不是整数的数字等不确定的值时读取失败,同样交给JsonHelper.
+ * 属性按JavaBean规则绑定,JsonHelper的全局配置(如命名策略)不在考虑之内,这类配置下应关闭编译的读取器
+ *
+ * @author Dylan
+ */
+class CompiledEntityReader<T> {
+
+	private final Constructor<T> constructor;
+	private final Map<String, Binding> bindings = new HashMap<String, Binding>();
+
+	private CompiledEntityReader(Constructor<T> constructor) {
+		this.constructor = constructor;
+	}
+
+	/**
+	 * @param clazz
+	 * @return null if the class has a property of an unsupported type or no default constructor
+	 */
+	static <T> CompiledEntityReader<T> compile(Class<T> clazz) {
+		return compile(clazz, new HashMap<Class<?>, CompiledEntityReader<?>>());
+	}
+
+	/**
+	 * read the json source into a new entity
+	 *
+	 * @param source
+	 * @return
+	 * @throws IOException if the source does not fit the compiled bindings, the caller falls back to JsonHelper
+	 */
+	T read(BytesReference source) throws IOException {
+		XContentParser parser = XContentHelper.createParser(source);
+		try {
+			if (parser.nextToken() != Token.START_OBJECT) {
+				throw new IOException("source is not an object");
+			}
+			return readObject(parser);
+		} finally {
+			parser.close();
+		}
+	}
+
+	/**
+	 * read an already parsed source, e.g. the partial field of a projection, into a new entity
+	 *
+	 * @param source
+	 * @return
+	 * @throws IOException if the source does not fit the compiled bindings, the caller falls back to JsonHelper
+	 */
+	@SuppressWarnings("unchecked")
+	T read(Map<String, Object> source) throws IOException {
+		T entity = newInstance();
+		for (Map.Entry<String, Object> entry : source.entrySet()) {
+			Binding binding = binding(entry.getKey());
+			Object value = entry.getValue();
+			if (null == value) {
+				binding.setNull(entity);
+			} else if (value instanceof Map) {
+				if (!(binding instanceof ObjectBinding)) {
+					throw new IOException("unexpected object for [" + entry.getKey() + "]");
+				}
+				binding.set(entity, ((ObjectBinding) binding).reader.read((Map<String, Object>) value));
+			} else if (value instanceof List) {
+				throw new IOException("unexpected array for [" + entry.getKey() + "]");
+			} else {
+				binding.set(entity, binding.convert(value));
+			}
+		}
+		return entity;
+	}
+
+	/**
+	 * the parser is positioned on the START_OBJECT of the entity and left on its END_OBJECT
+	 */
+	private T readObject(XContentParser parser) throws IOException {
+		T entity = newInstance();
+		Token token;
+		while ((token = parser.nextToken()) != Token.END_OBJECT) {
+			if (token != Token.FIELD_NAME) {
+				throw new IOException("unexpected token " + token);
+			}
+			Binding binding = binding(parser.currentName());
+			token = parser.nextToken();
+			if (token == Token.VALUE_NULL) {
+				binding.setNull(entity);
+			} else if (token == Token.START_ARRAY || (token == Token.START_OBJECT && !(binding instanceof ObjectBinding))) {
+				throw new IOException("unexpected " + token + " for [" + parser.currentName() + "]");
+			} else {
+				binding.read(parser, token, entity);
+			}
+		}
+		return entity;
+	}
+
+	private T newInstance() throws IOException {
+		try {
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new IOException("failed to create " + constructor.getDeclaringClass().getName(), e);
+		}
+	}
+
+	private Binding binding(String key) throws IOException {
+		Binding binding = bindings.get(key);
+		if (null == binding) {
+			// a renamed or read only property, or a key the entity does not know: JsonHelper decides
+			throw new IOException("no property for [" + key + "]");
+		}
+		return binding;
+	}
+
+	private static <T> CompiledEntityReader<T> compile(Class<T> clazz, Map<Class<?>, CompiledEntityReader<?>> compiling) {
+		if (clazz.isInterface() || Modifier.isAbstract(clazz.getModifiers()) || (clazz.isMemberClass() && !Modifier.isStatic(clazz.getModifiers()))) {
+			return null;
+		}
+		Constructor<T> constructor;
+		Map<String, Method> setters;
+		try {
+			constructor = clazz.getDeclaredConstructor();
+			constructor.setAccessible(true);
+			// read only properties are left out, a document with such a key goes through JsonHelper
+			setters = BeanProperties.setters(clazz);
+			if (!BeanProperties.annotated(clazz).isEmpty()) {
+				return null;
+			}
+		} catch (Exception e) {
+			return null;
+		}
+		CompiledEntityReader<T> reader = new CompiledEntityReader<T>(constructor);
+		compiling.put(clazz, reader);
+		Map<TypeVariable<?>, Type> typeArguments = typeArguments(clazz);
+		for (Map.Entry<String, Method> property : setters.entrySet()) {
+			Method setter = property.getValue();
+			Class<?> type = resolve(setter.getGenericParameterTypes()[0], typeArguments);
+			Binding binding = null == type ? null : binding(setter, type, compiling);
+			if (null == binding) {
+				return null;
+			}
+			reader.bindings.put(property.getKey(), binding);
+		}
+		return reader;
+	}
+
+	/**
+	 * type variables of the superclasses bound by the class, e.g. the id type of BaseObject&lt;Integer&gt;
+	 */
+	private static Map<TypeVariable<?>, Type> typeArguments(Class<?> clazz) {
+		Map<TypeVariable<?>, Type> arguments = new HashMap<TypeVariable<?>, Type>();
+		for (Class<?> current = clazz; null != current && Object.class != current; current = current.getSuperclass()) {
+			Type superclass = current.getGenericSuperclass();
+			if (superclass instanceof ParameterizedType) {
+				TypeVariable<?>[] variables = current.getSuperclass().getTypeParameters();
+				Type[] actual = ((ParameterizedType) superclass).getActualTypeArguments();
+				for (int i = 0; i < variables.length; i++) {
+					arguments.put(variables[i], actual[i]);
+				}
+			}
+		}
+		return arguments;
+	}
+
+	private static Class<?> resolve(Type type, Map<TypeVariable<?>, Type> typeArguments) {
+		while (type instanceof TypeVariable) {
+			type = typeArguments.get(type);
+		}
+		return type instanceof Class ? (Class<?>) type : null;
+	}
+
+	private static Binding binding(Method setter, Class<?> type, Map<Class<?>, CompiledEntityReader<?>> compiling) {
+		if (String.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) {
+					return value.toString();
+				}
+			};
+		}
+		if (int.class == type || Integer.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Integer.valueOf(value instanceof String ? Integer.parseInt((String) value) : (int) integral(value, Integer.MIN_VALUE,
+							Integer.MAX_VALUE));
+				}
+			};
+		}
+		if (long.class == type || Long.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Long.valueOf(value instanceof String ? Long.parseLong((String) value) : integral(value, Long.MIN_VALUE, Long.MAX_VALUE));
+				}
+			};
+		}
+		if (short.class == type || Short.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Short.valueOf(value instanceof String ? Short.parseShort((String) value) : (short) integral(value, Short.MIN_VALUE,
+							Short.MAX_VALUE));
+				}
+			};
+		}
+		if (byte.class == type || Byte.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Byte.valueOf(value instanceof String ? Byte.parseByte((String) value) : (byte) integral(value, Byte.MIN_VALUE,
+							Byte.MAX_VALUE));
+				}
+			};
+		}
+		if (double.class == type || Double.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Double.valueOf(value instanceof String ? Double.parseDouble((String) value) : number(value).doubleValue());
+				}
+			};
+		}
+		if (float.class == type || Float.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return Float.valueOf(value instanceof String ? Float.parseFloat((String) value) : number(value).floatValue());
+				}
+			};
+		}
+		if (boolean.class == type || Boolean.class == type) {
+			return new Binding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					if (value instanceof Boolean) {
+						return value;
+					}
+					if ("true".equals(value) || "false".equals(value)) {
+						return Boolean.valueOf((String) value);
+					}
+					throw new IOException("[" + value + "] is not a boolean");
+				}
+			};
+		}
+		if (BigDecimal.class == type) {
+			return new TextBinding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return new BigDecimal(value.toString());
+				}
+			};
+		}
+		if (BigInteger.class == type) {
+			return new TextBinding(setter) {
+				@Override
+				Object convert(Object value) throws IOException {
+					return new BigInteger(value.toString());
+				}
+			};
+		}
+		if (type.isEnum()) {
+			return new EnumBinding(setter, type);
+		}
+		if (type.isPrimitive() || type.isArray() || type.getName().startsWith("java.")) {
+			return null;
+		}
+		CompiledEntityReader<?> nested = compiling.get(type);
+		if (null == nested) {
+			nested = compile(type, compiling);
+			if (null == nested) {
+				return null;
+			}
+		}
+		return new ObjectBinding(setter, nested);
+	}
+
+	/**
+	 * @throws IOException if the number is not integral or out of the range, instead of silently narrowing it
+	 */
+	private static long integral(Object value, long min, long max) throws IOException {
+		if (!(value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte)) {
+			throw new IOException("[" + value + "] is not an integral number");
+		}
+		long number = ((Number) value).longValue();
+		if (number < min || number > max) {
+			throw new IOException("[" + number + "] is out of the range [" + min + ", " + max + "]");
+		}
+		return number;
+	}
+
+	private static Number number(Object value) throws IOException {
+		if (!(value instanceof Number)) {
+			throw new IOException("[" + value + "] is not a number");
+		}
+		return (Number) value;
+	}
+
+	/**
+	 * the precomputed setter of one property
+	 */
+	private static abstract class Binding {
+
+		protected final Method setter;
+		private final boolean primitive;
+
+		Binding(Method setter) {
+			this.setter = setter;
+			this.primitive = setter.getParameterTypes()[0].isPrimitive();
+		}
+
+		/**
+		 * @param value a String, Boolean or Number as parsed from the json, never null
+		 * @return the value to set
+		 * @throws IOException if the value can not be converted exactly
+		 */
+		abstract Object convert(Object value) throws IOException;
+
+		/**
+		 * @param parser positioned on the value
+		 * @param token the current token, never VALUE_NULL
+		 * @param entity
+		 */
+		void read(XContentParser parser, Token token, Object entity) throws IOException {
+			Object value;
+			if (token == Token.VALUE_STRING) {
+				value = parser.text();
+			} else if (token == Token.VALUE_NUMBER) {
+				value = parser.numberValue();
+			} else if (token == Token.VALUE_BOOLEAN) {
+				value = Boolean.valueOf(parser.booleanValue());
+			} else {
+				throw new IOException("unexpected " + token);
+			}
+			set(entity, convert(value));
+		}
+
+		void setNull(Object entity) throws IOException {
+			if (!primitive) {
+				set(entity, null);
+			}
+		}
+
+		void set(Object entity, Object value) throws IOException {
+			try {
+				setter.invoke(entity, value);
+			} catch (Exception e) {
+				throw new IOException("failed to call " + setter, e);
+			}
+		}
+	}
+
+	/**
+	 * reads numbers from their text, so big numbers keep their precision
+	 */
+	private static abstract class TextBinding extends Binding {
+
+		TextBinding(Method setter) {
+			super(setter);
+		}
+
+		@Override
+		void read(XContentParser parser, Token token, Object entity) throws IOException {
+			set(entity, convert(parser.text()));
+		}
+	}
+
+	private static class ObjectBinding extends Binding {
+
+		private final CompiledEntityReader<?> reader;
+
+		ObjectBinding(Method setter, CompiledEntityReader<?> reader) {
+			super(setter);
+			this.reader = reader;
+		}
+
+		@Override
+		Object convert(Object value) throws IOException {
+			throw new IOException("[" + value + "] is not an object");
+		}
+
+		@Override
+		void read(XContentParser parser, Token token, Object entity) throws IOException {
+			if (token != Token.START_OBJECT) {
+				throw new IOException("unexpected " + token);
+			}
+			set(entity, reader.readObject(parser));
+		}
+	}
+
+	private static class EnumBinding extends Binding {
+
+		private final Map<String, Object> constants = new HashMap<String, Object>();
+
+		EnumBinding(Method setter, Class<?> type) {
+			super(setter);
+			for (Object constant : type.getEnumConstants()) {
+				constants.put(((Enum<?>) constant).name(), constant);
+			}
+		}
+
+		@Override
+		Object convert(Object value) throws IOException {
+			Object constant = constants.get(value);
+			if (null == constant) {
+				throw new IOException("unknown constant [" + value + "] of " + setter.getParameterTypes()[0].getName());
+			}
+			return constant;
+		}
+	}
+}
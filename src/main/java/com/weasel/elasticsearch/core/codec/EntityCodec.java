@@ -0,0 +1,21 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 实体的序列化器,把实体直接写成json字节.实现必须是线程安全的
+ * 
+ * @author Dylan
+ */
+public interface EntityCodec {
+
+	/**
+	 * write the json source of the entity to the stream
+	 * 
+	 * @param entity
+	 * @param out a pooled buffer, do not keep a reference to it
+	 * @throws IOException
+	 */
+	void encode(Object entity, OutputStream out) throws IOException;
+}
@@ -0,0 +1,180 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentFactory;
+import org.springframework.util.Assert;
+
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+import com.weasel.helper.JsonHelper;
+
+/**
+ * 按实体类型选择序列化器.注册的codec写入每个线程可重复使用的缓冲区,之外每个文档只分配一个与json等长的字节数组
+ * (请求发送前必须持有自己的副本).没有注册codec的实体直接使用JsonHelper生成的json字符串:它无论如何都会生成这个字符串,
+ * 再经过缓冲区只会多复制一次
+ * 读取时使用按类型编译并缓存的{@link CompiledEntityReader},编译失败的类型或者编译的读取器不能确定结果的文档交给JsonHelper
+ * 
+ * @author Dylan
+ */
+public class EntityCodecRegistry {
+
+	private static final int INITIAL_BUFFER_SIZE = 4 * 1024;
+	/**
+	 * buffers grown over this size are not kept, so one huge document does not pin memory for the thread's lifetime
+	 */
+	private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+	private final Map<Class<?>, EntityCodec> codecs = new ConcurrentHashMap<Class<?>, EntityCodec>();
+	private EntityCodec defaultCodec = new JsonHelperEntityCodec();
+	/**
+	 * compiled readers, {@link #NOT_COMPILABLE} for classes which always go through JsonHelper
+	 */
+	private final ConcurrentMap<Class<?>, Object> readers = new ConcurrentHashMap<Class<?>, Object>();
+	private volatile boolean compiledReaders = true;
+	private final AtomicLong fallbacks = new AtomicLong();
+
+	private final ThreadLocal<PooledByteArrayOutputStream> buffers = new ThreadLocal<PooledByteArrayOutputStream>() {
+		@Override
+		protected PooledByteArrayOutputStream initialValue() {
+			return new PooledByteArrayOutputStream(INITIAL_BUFFER_SIZE);
+		}
+	};
+
+	/**
+	 * @param clazz the codec is also used for subclasses without a codec of their own
+	 * @param codec
+	 */
+	public void register(Class<?> clazz, EntityCodec codec) {
+		Assert.notNull(clazz, "clazz must not be null");
+		Assert.notNull(codec, "codec must not be null");
+		codecs.put(clazz, codec);
+	}
+
+	public void setDefaultCodec(EntityCodec defaultCodec) {
+		Assert.notNull(defaultCodec, "defaultCodec must not be null");
+		this.defaultCodec = defaultCodec;
+	}
+
+	/**
+	 * @param compiledReaders false to read every document with JsonHelper
+	 */
+	public void setCompiledReaders(boolean compiledReaders) {
+		this.compiledReaders = compiledReaders;
+	}
+
+	public EntityCodec getCodec(Class<?> clazz) {
+		for (Class<?> current = clazz; null != current; current = current.getSuperclass()) {
+			EntityCodec codec = codecs.get(current);
+			if (null != codec) {
+				return codec;
+			}
+		}
+		return defaultCodec;
+	}
+
+	/**
+	 * @param entity
+	 * @return the json source of the entity
+	 */
+	public BytesReference encode(Object entity) {
+		Assert.notNull(entity, "entity must not be null");
+		EntityCodec codec = getCodec(entity.getClass());
+		if (codec instanceof JsonHelperEntityCodec) {
+			return new BytesArray(JsonHelper.toJsonString(entity));
+		}
+		PooledByteArrayOutputStream buffer = buffers.get();
+		buffer.reset();
+		try {
+			codec.encode(entity, buffer);
+			return new BytesArray(Arrays.copyOf(buffer.buffer(), buffer.size()));
+		} catch (Exception e) {
+			throw new ElasticsearchException("failed to encode [" + entity.getClass().getName() + "]", e);
+		} finally {
+			if (buffer.capacity() > MAX_POOLED_BUFFER_SIZE) {
+				buffers.remove();
+			}
+		}
+	}
+
+	/**
+	 * @param source the json source of a hit or get response
+	 * @param clazz
+	 * @return the entity, null if there is no source
+	 */
+	public <T> T decode(BytesReference source, Class<T> clazz) {
+		if (null == source) {
+			return null;
+		}
+		CompiledEntityReader<T> reader = compiledReaders ? reader(clazz) : null;
+		if (null != reader) {
+			try {
+				return reader.read(source);
+			} catch (Exception e) {
+				// a key or value the compiled bindings do not understand, JsonHelper decides
+				fallbacks.incrementAndGet();
+			}
+		}
+		return JsonHelper.fromJsonString(source.toUtf8(), clazz);
+	}
+
+	/**
+	 * @param source an already parsed source, e.g. the partial field of a projection
+	 * @param clazz
+	 * @return the entity, null if there is no source
+	 */
+	public <T> T decode(Map<String, Object> source, Class<T> clazz) {
+		if (null == source) {
+			return null;
+		}
+		CompiledEntityReader<T> reader = compiledReaders ? reader(clazz) : null;
+		if (null != reader) {
+			try {
+				return reader.read(source);
+			} catch (Exception e) {
+				fallbacks.incrementAndGet();
+			}
+		}
+		try {
+			return JsonHelper.fromJsonString(XContentFactory.jsonBuilder().map(source).string(), clazz);
+		} catch (IOException e) {
+			throw new ElasticsearchException("failed to decode [" + clazz.getName() + "]", e);
+		}
+	}
+
+	/**
+	 * @return number of documents a compiled reader could not read and handed to JsonHelper
+	 */
+	public long getFallbacks() {
+		return fallbacks.get();
+	}
+
+	/**
+	 * @param clazz
+	 * @return true if documents of the class are read by a compiled reader, false if they always go through JsonHelper
+	 */
+	public boolean isCompiled(Class<?> clazz) {
+		return compiledReaders && null != reader(clazz);
+	}
+
+	@SuppressWarnings("unchecked")
+	private <T> CompiledEntityReader<T> reader(Class<T> clazz) {
+		Object reader = readers.get(clazz);
+		if (null == reader) {
+			reader = CompiledEntityReader.compile(clazz);
+			if (null == reader) {
+				reader = NOT_COMPILABLE;
+			}
+			readers.putIfAbsent(clazz, reader);
+		}
+		return NOT_COMPILABLE == reader ? null : (CompiledEntityReader<T>) reader;
+	}
+
+	private static final Object NOT_COMPILABLE = new Object();
+}
@@ -0,0 +1,26 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import com.weasel.helper.JsonHelper;
+
+/**
+ * 默认的序列化器,保持与{@link JsonHelper}完全相同的json格式.JsonHelper为每个文档生成一个json字符串,
+ * 所以{@link EntityCodecRegistry}不把它写入池化的缓冲区,而是直接使用这个字符串.
+ * 需要不经过字符串、分配更少的实体请注册{@link XContentEntityCodec}
+ * 
+ * @author Dylan
+ */
+public class JsonHelperEntityCodec implements EntityCodec {
+
+	@Override
+	public void encode(Object entity, OutputStream out) throws IOException {
+		String json = JsonHelper.toJsonString(entity);
+		if (out instanceof PooledByteArrayOutputStream) {
+			((PooledByteArrayOutputStream) out).writeUtf8(json);
+		} else {
+			out.write(json.getBytes("UTF-8"));
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+/**
+ * 可重复使用的缓冲区,由{@link EntityCodecRegistry}按线程池化
+ * 
+ * @author Dylan
+ */
+public class PooledByteArrayOutputStream extends ByteArrayOutputStream {
+
+	public PooledByteArrayOutputStream(int size) {
+		super(size);
+	}
+
+	/**
+	 * encode the string as UTF-8 straight into the buffer
+	 * 
+	 * @param value
+	 */
+	public void writeUtf8(String value) {
+		int length = value.length();
+		ensureCapacity(count + length * 3);
+		byte[] buffer = buf;
+		int position = count;
+		for (int i = 0; i < length; i++) {
+			char c = value.charAt(i);
+			if (c < 0x80) {
+				buffer[position++] = (byte) c;
+			} else if (c < 0x800) {
+				buffer[position++] = (byte) (0xC0 | (c >> 6));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(value.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, value.charAt(++i));
+				buffer[position++] = (byte) (0xF0 | (codePoint >> 18));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+				buffer[position++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (codePoint & 0x3F));
+			} else if (c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE) {
+				buffer[position++] = (byte) '?';
+			} else {
+				buffer[position++] = (byte) (0xE0 | (c >> 12));
+				buffer[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				buffer[position++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		count = position;
+	}
+
+	/**
+	 * @return the backing array, valid up to {@link #size()}
+	 */
+	public byte[] buffer() {
+		return buf;
+	}
+
+	public int capacity() {
+		return buf.length;
+	}
+
+	private void ensureCapacity(int minCapacity) {
+		if (minCapacity > buf.length) {
+			buf = Arrays.copyOf(buf, Math.max(buf.length << 1, minCapacity));
+		}
+	}
+}
@@ -0,0 +1,40 @@
+package com.weasel.elasticsearch.core.codec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.elasticsearch.common.xcontent.XContentFactory;
+
+/**
+ * 为热点实体手写的序列化器的基类,字段通过{@link XContentBuilder}直接写入池化的缓冲区,不经过反射和中间字符串.
+ * 注意输出的json需要能被读取端(JsonHelper)反序列化
+ * 
+ * @author Dylan
+ */
+public abstract class XContentEntityCodec<T> implements EntityCodec {
+
+	private final Class<T> entityClass;
+
+	protected XContentEntityCodec(Class<T> entityClass) {
+		this.entityClass = entityClass;
+	}
+
+	@Override
+	public void encode(Object entity, OutputStream out) throws IOException {
+		XContentBuilder builder = XContentFactory.jsonBuilder(out);
+		builder.startObject();
+		writeFields(entityClass.cast(entity), builder);
+		builder.endObject();
+		builder.close();
+	}
+
+	/**
+	 * write the fields of the entity, the enclosing object is started and ended by the caller
+	 * 
+	 * @param entity
+	 * @param builder
+	 * @throws IOException
+	 */
+	protected abstract void writeFields(T entity, XContentBuilder builder) throws IOException;
+}
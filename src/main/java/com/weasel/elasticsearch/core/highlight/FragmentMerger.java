@@ -0,0 +1,19 @@
+package com.weasel.elasticsearch.core.highlight;
+
+import org.elasticsearch.common.text.Text;
+
+import com.weasel.elasticsearch.annotation.HighlightFragments;
+
+/**
+ * 把一个高亮字段的多个片段合并成写入实体的值.实现必须是线程安全的,并且有无参构造函数(通过{@link HighlightFragments}声明时)
+ * 
+ * @author Dylan
+ */
+public interface FragmentMerger {
+
+	/**
+	 * @param fragments never empty
+	 * @return the value set on the entity
+	 */
+	String merge(Text[] fragments);
+}
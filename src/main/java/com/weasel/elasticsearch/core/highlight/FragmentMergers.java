@@ -0,0 +1,47 @@
+package com.weasel.elasticsearch.core.highlight;
+
+import org.elasticsearch.common.text.Text;
+
+/**
+ * 常用的{@link FragmentMerger}
+ * 
+ * @author Dylan
+ */
+public final class FragmentMergers {
+
+	/**
+	 * only the best fragment, the default
+	 */
+	public static final FragmentMerger FIRST = new FragmentMerger() {
+		@Override
+		public String merge(Text[] fragments) {
+			return fragments[0].string();
+		}
+	};
+
+	private FragmentMergers() {
+	}
+
+	/**
+	 * @param separator
+	 * @return a merger joining all fragments in the order elasticsearch returned them
+	 */
+	public static FragmentMerger joining(final String separator) {
+		return new FragmentMerger() {
+			@Override
+			public String merge(Text[] fragments) {
+				if (fragments.length == 1) {
+					return fragments[0].string();
+				}
+				StringBuilder value = new StringBuilder();
+				for (int i = 0; i < fragments.length; i++) {
+					if (i > 0) {
+						value.append(separator);
+					}
+					value.append(fragments[i].string());
+				}
+				return value.toString();
+			}
+		};
+	}
+}
@@ -0,0 +1,165 @@
+package com.weasel.elasticsearch.core.highlight;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.elasticsearch.search.highlight.HighlightField;
+import org.springframework.util.Assert;
+
+import com.weasel.elasticsearch.annotation.HighlightFragments;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+
+/**
+ * 把高亮片段写入实体.每个实体类型的每个字段路径(支持address.city这样的嵌套路径)只解析一次,之后直接通过缓存的Field写入.
+ * 路径的某一段是字符串字段时,剩下的部分视为它的multi field(如title.pinyin写入title);无法解析的路径被忽略
+ *
+ * @author Dylan
+ */
+public class HighlightBinder {
+
+	private final ConcurrentMap<Class<?>, ConcurrentMap<String, Binding>> bindings = new ConcurrentHashMap<Class<?>, ConcurrentMap<String, Binding>>();
+	private final Map<String, FragmentMerger> mergers = new ConcurrentHashMap<String, FragmentMerger>();
+
+	/**
+	 * declare the merger of a field path without annotating the entity, takes precedence over {@link HighlightFragments}
+	 *
+	 * @param clazz
+	 * @param path
+	 * @param merger
+	 */
+	public void register(Class<?> clazz, String path, FragmentMerger merger) {
+		Assert.notNull(merger, "merger must not be null");
+		mergers.put(clazz.getName() + '#' + path, merger);
+		ConcurrentMap<String, Binding> compiled = bindings.get(clazz);
+		if (null != compiled) {
+			compiled.remove(path);
+		}
+	}
+
+	/**
+	 * @param highlightFields
+	 * @param entity
+	 */
+	public void bind(Map<String, HighlightField> highlightFields, Object entity) {
+		if (null == highlightFields || highlightFields.isEmpty() || null == entity) {
+			return;
+		}
+		ConcurrentMap<String, Binding> compiled = bindings.get(entity.getClass());
+		if (null == compiled) {
+			compiled = new ConcurrentHashMap<String, Binding>();
+			ConcurrentMap<String, Binding> existing = bindings.putIfAbsent(entity.getClass(), compiled);
+			if (null != existing) {
+				compiled = existing;
+			}
+		}
+		for (Map.Entry<String, HighlightField> entry : highlightFields.entrySet()) {
+			HighlightField field = entry.getValue();
+			if (null == field.fragments() || field.fragments().length == 0) {
+				continue;
+			}
+			Binding binding = compiled.get(entry.getKey());
+			if (null == binding) {
+				binding = compile(entity.getClass(), entry.getKey());
+				compiled.put(entry.getKey(), binding);
+			}
+			binding.set(entity, field);
+		}
+	}
+
+	private Binding compile(Class<?> clazz, String path) {
+		String[] segments = path.split("\\.");
+		Field[] fields = new Field[segments.length];
+		Class<?> current = clazz;
+		int length = 0;
+		for (String segment : segments) {
+			Field field = findField(current, segment);
+			if (null == field) {
+				return IGNORED;
+			}
+			field.setAccessible(true);
+			fields[length++] = field;
+			if (String.class == field.getType()) {
+				break;
+			}
+			current = field.getType();
+		}
+		Field target = fields[length - 1];
+		if (String.class != target.getType()) {
+			return IGNORED;
+		}
+		Field[] parents = new Field[length - 1];
+		System.arraycopy(fields, 0, parents, 0, parents.length);
+		return new Binding(parents, target, merger(clazz, path, target));
+	}
+
+	private FragmentMerger merger(Class<?> clazz, String path, Field target) {
+		FragmentMerger merger = mergers.get(clazz.getName() + '#' + path);
+		if (null != merger) {
+			return merger;
+		}
+		HighlightFragments fragments = target.getAnnotation(HighlightFragments.class);
+		if (null == fragments) {
+			return FragmentMergers.FIRST;
+		}
+		if (FragmentMerger.class == fragments.merger()) {
+			return FragmentMergers.joining(fragments.separator());
+		}
+		try {
+			Constructor<? extends FragmentMerger> constructor = fragments.merger().getDeclaredConstructor();
+			constructor.setAccessible(true);
+			return constructor.newInstance();
+		} catch (Exception e) {
+			throw new ElasticsearchException("failed to create the fragment merger of [" + path + "]", e);
+		}
+	}
+
+	private static Field findField(Class<?> clazz, String name) {
+		for (Class<?> current = clazz; null != current && Object.class != current; current = current.getSuperclass()) {
+			for (Field field : current.getDeclaredFields()) {
+				if (field.getName().equals(name)) {
+					return field;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static class Binding {
+
+		private final Field[] parents;
+		private final Field target;
+		private final FragmentMerger merger;
+
+		Binding(Field[] parents, Field target, FragmentMerger merger) {
+			this.parents = parents;
+			this.target = target;
+			this.merger = merger;
+		}
+
+		void set(Object entity, HighlightField field) {
+			try {
+				Object owner = entity;
+				for (Field parent : parents) {
+					Object child = parent.get(owner);
+					if (null == child) {
+						// e.g. a projection without the nested object, there is nothing to highlight into
+						return;
+					}
+					owner = child;
+				}
+				target.set(owner, merger.merge(field.fragments()));
+			} catch (IllegalAccessException e) {
+				throw new ElasticsearchException("failed to set highlight field [" + field.name() + "]", e);
+			}
+		}
+	}
+
+	private static final Binding IGNORED = new Binding(null, null, null) {
+		@Override
+		void set(Object entity, HighlightField field) {
+		}
+	};
+}
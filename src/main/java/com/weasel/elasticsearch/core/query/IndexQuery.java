@@ -15,6 +15,8 @@
  */
 package com.weasel.elasticsearch.core.query;
 
+import org.elasticsearch.common.bytes.BytesReference;
+
 /**
  * IndexQuery
  * 
@@ -30,6 +32,11 @@ public class IndexQuery {
 	private Long version;
 	private String indexName;
 	private String type;
+	private String routing;
+	/**
+	 * the source encoded ahead of time, e.g. by a write-behind buffer, takes precedence over the object
+	 */
+	private BytesReference source;
 
 	public String getId() {
 		return id;
@@ -70,4 +77,20 @@ public class IndexQuery {
 	public void setType(String type) {
 		this.type = type;
 	}
+
+	public String getRouting() {
+		return routing;
+	}
+
+	public void setRouting(String routing) {
+		this.routing = routing;
+	}
+
+	public BytesReference getSource() {
+		return source;
+	}
+
+	public void setSource(BytesReference source) {
+		this.source = source;
+	}
 }
@@ -18,6 +18,7 @@ package com.weasel.elasticsearch.core.query;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.facet.FacetBuilder;
@@ -39,6 +40,10 @@ public class NativeSearchQuery  extends AbstractQuery implements SearchQuery {
 	private List<SortBuilder> sorts;
     private List<FacetBuilder> facets;
     private HighlightBuilder.Field[] highlightFields;
+    private String cursor;
+    private long pointInTimeKeepAlive;
+    private SearchType searchType;
+    private boolean lazyResults;
 
 
     public NativeSearchQuery(QueryBuilder query) {
@@ -98,4 +103,40 @@ public class NativeSearchQuery  extends AbstractQuery implements SearchQuery {
 		return sorts;
 	}
 
+	@Override
+	public String getCursor() {
+		return cursor;
+	}
+
+	public void setCursor(String cursor) {
+		this.cursor = cursor;
+	}
+
+	@Override
+	public long getPointInTimeKeepAlive() {
+		return pointInTimeKeepAlive;
+	}
+
+	public void setPointInTimeKeepAlive(long pointInTimeKeepAlive) {
+		this.pointInTimeKeepAlive = pointInTimeKeepAlive;
+	}
+
+	@Override
+	public SearchType getSearchType() {
+		return searchType;
+	}
+
+	public void setSearchType(SearchType searchType) {
+		this.searchType = searchType;
+	}
+
+	@Override
+	public boolean isLazyResults() {
+		return lazyResults;
+	}
+
+	public void setLazyResults(boolean lazyResults) {
+		this.lazyResults = lazyResults;
+	}
+
 }
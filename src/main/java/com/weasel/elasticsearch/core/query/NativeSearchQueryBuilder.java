@@ -19,6 +19,7 @@ import java.util.ArrayList;
 import java.util.List;
 
 import org.apache.commons.collections.CollectionUtils;
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.facet.FacetBuilder;
@@ -47,6 +48,10 @@ public class NativeSearchQueryBuilder {
     private String[] indices;
     private String[] types;
     private String[] fields;
+    private String cursor;
+    private long pointInTimeKeepAlive;
+    private SearchType searchType;
+    private boolean lazyResults;
 
     public NativeSearchQueryBuilder withQuery(QueryBuilder queryBuilder) {
         this.queryBuilder = queryBuilder;
@@ -93,6 +98,46 @@ public class NativeSearchQueryBuilder {
         return this;
     }
 
+    /**
+     * 游标分页:从上一页的CursorPage.getNextCursor()继续
+     * @param cursor
+     * @return
+     */
+    public NativeSearchQueryBuilder withCursor(String cursor) {
+        this.cursor = cursor;
+        return this;
+    }
+
+    /**
+     * 游标分页基于一个scroll的一致视图,翻页期间的写入不影响结果
+     * @param keepAlive 两次翻页之间scroll的保持时间(毫秒)
+     * @return
+     */
+    public NativeSearchQueryBuilder withPointInTime(long keepAlive) {
+        this.pointInTimeKeepAlive = keepAlive;
+        return this;
+    }
+
+    /**
+     * 不需要打分(只有过滤和排序)的查询用QUERY_THEN_FETCH,省掉DFS收集词频的一次往返
+     * @param searchType
+     * @return
+     */
+    public NativeSearchQueryBuilder withSearchType(SearchType searchType) {
+        this.searchType = searchType;
+        return this;
+    }
+
+    /**
+     * 只关心总数、facets或者前几条结果时使用,hit在第一次被访问时才反序列化
+     * @param lazyResults
+     * @return
+     */
+    public NativeSearchQueryBuilder withLazyResults(boolean lazyResults) {
+        this.lazyResults = lazyResults;
+        return this;
+    }
+
     public NativeSearchQuery build() {
         NativeSearchQuery nativeSearchQuery = new NativeSearchQuery(queryBuilder, filterBuilder, sortBuilders, highlightFields);
         if (pageable != null) {
@@ -110,6 +155,10 @@ public class NativeSearchQueryBuilder {
         if (CollectionUtils.isNotEmpty(facetRequests)) {
             nativeSearchQuery.setFacets(facetRequests);
         }
+        nativeSearchQuery.setCursor(cursor);
+        nativeSearchQuery.setPointInTimeKeepAlive(pointInTimeKeepAlive);
+        nativeSearchQuery.setSearchType(searchType);
+        nativeSearchQuery.setLazyResults(lazyResults);
         return nativeSearchQuery;
     }
 }
@@ -15,6 +15,7 @@
  */
 package com.weasel.elasticsearch.core.query;
 
+import org.elasticsearch.action.search.SearchType;
 import org.elasticsearch.index.query.FilterBuilder;
 import org.elasticsearch.index.query.QueryBuilder;
 import org.elasticsearch.search.facet.FacetBuilder;
@@ -45,4 +46,28 @@ public interface SearchQuery extends Query {
     List<FacetBuilder> getFacets();
 
     HighlightBuilder.Field[] getHighlightFields();
+
+    /**
+     * 游标分页时上一页返回的游标,null表示第一页
+     * @return
+     */
+    String getCursor();
+
+    /**
+     * 游标分页是否基于point in time(scroll)视图,大于0时为scroll的保持时间(毫秒)
+     * @return
+     */
+    long getPointInTimeKeepAlive();
+
+    /**
+     * 查询的search type,null时使用实体上的@DocumentSearchType或者全局默认值
+     * @return
+     */
+    SearchType getSearchType();
+
+    /**
+     * 结果列表是否延迟反序列化,见LazyResultList
+     * @return
+     */
+    boolean isLazyResults();
 }
@@ -0,0 +1,74 @@
+package com.weasel.elasticsearch.test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.elasticsearch.test.domain.Address;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * 基准测试的基类.默认的测试中跳过,需要时用mvn test -Dbenchmark=true -Dtest=XxxBenchmarkTest单独运行
+ * 
+ * @author Dylan
+ */
+public abstract class AbstractBenchmarkTest extends AbstractESTest {
+
+	@Autowired
+	protected UserElasticserarchRepository userRepository;
+
+	@Before
+	public void onlyWhenAsked() {
+		Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+	}
+
+	/**
+	 * replace the users in the index with count new ones, u0 to u(count - 1)
+	 * 
+	 * @param count
+	 * @param withAddress
+	 */
+	protected void saveUsers(int count, boolean withAddress) {
+		userRepository.deleteAll();
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < count; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setPassword("p" + i);
+			user.setUsername("u" + i);
+			if (withAddress) {
+				Address address = new Address();
+				address.setProvince("广东");
+				address.setCity("广州" + i);
+				user.setAddress(address);
+			}
+			users.add(user);
+		}
+		userRepository.save(users);
+	}
+
+	/**
+	 * @param warmup runs not measured
+	 * @param iterations
+	 * @param run called with the run number
+	 * @return average milliseconds of a measured run
+	 */
+	protected static double averageMillis(int warmup, int iterations, Run run) {
+		for (int i = 0; i < warmup; i++) {
+			run.run(i);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			run.run(i);
+		}
+		return (System.nanoTime() - start) / 1000000.0 / iterations;
+	}
+
+	protected interface Run {
+
+		void run(int i);
+	}
+}
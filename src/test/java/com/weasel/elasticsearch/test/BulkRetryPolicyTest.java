@@ -0,0 +1,94 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Map;
+
+import org.elasticsearch.common.util.concurrent.EsRejectedExecutionException;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.bulk.BulkRetryPolicy;
+import com.weasel.elasticsearch.core.bulk.FileDeadLetterHandler;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.test.domain.User;
+import com.weasel.helper.JsonHelper;
+
+/**
+ * @author Dylan
+ */
+public class BulkRetryPolicyTest {
+
+	@Test
+	public void retryable() {
+		BulkRetryPolicy policy = new BulkRetryPolicy();
+		assertTrue(policy.isRetryable("RemoteTransportException[[node][inet[/127.0.0.1:9300]][bulk/shard]]; nested: EsRejectedExecutionException[rejected execution (queue capacity 50)]; "));
+		assertTrue(policy.isRetryable(new RuntimeException(new EsRejectedExecutionException("rejected execution"))));
+		assertFalse(policy.isRetryable("MapperParsingException[failed to parse [age]]; nested: NumberFormatException[For input string: \"abc\"]; "));
+		assertFalse(policy.isRetryable((String) null));
+	}
+
+	@Test
+	public void retryableByExceptionName() {
+		BulkRetryPolicy policy = new BulkRetryPolicy();
+		assertTrue(policy.isRetryable("ReceiveTimeoutTransportException[[node][inet[/127.0.0.1:9300]][index] request_id [12] timed out after [5000ms]]"));
+		assertFalse(policy.isRetryable("MapperParsingException[failed to parse [message]]; nested: JsonParseException[Unexpected character in TimeoutException]; "));
+		assertFalse(policy.isRetryable("ElasticSearchIllegalArgumentException[unknown TimeoutException setting]"));
+	}
+
+	@Test
+	public void clusterBlock() {
+		BulkRetryPolicy policy = new BulkRetryPolicy();
+		assertTrue(policy.isRetryable("ClusterBlockException[blocked by: [SERVICE_UNAVAILABLE/1/state not recovered / initialized];]"));
+		assertTrue(policy.isRetryable("ClusterBlockException[blocked by: [SERVICE_UNAVAILABLE/2/no master];]"));
+		assertFalse(policy.isRetryable("ClusterBlockException[blocked by: [FORBIDDEN/5/index read-only (api)];]"));
+		assertFalse(policy.isRetryable("ClusterBlockException[blocked by: [SERVICE_UNAVAILABLE/1/state not recovered / initialized];[FORBIDDEN/8/index write (api)];]"));
+	}
+
+	@Test
+	public void backoff() {
+		BulkRetryPolicy policy = new BulkRetryPolicy().withInitialBackoff(100).withMaxBackoff(1000).withJitter(0.5);
+		for (int retry = 0; retry < 40; retry++) {
+			long expected = Math.min(1000, 100L << Math.min(retry, 30));
+			long delay = policy.backoff(retry);
+			assertTrue(delay <= expected && delay >= expected / 2);
+		}
+	}
+
+	@Test
+	public void fileDeadLetter() throws IOException {
+		File file = File.createTempFile("dead-letter", ".json");
+		file.deleteOnExit();
+		FileDeadLetterHandler handler = new FileDeadLetterHandler(file);
+		User user = new User();
+		user.setId(1);
+		user.setUsername("u1");
+		IndexQuery query = new IndexQuery();
+		query.setId("1");
+		query.setObject(user);
+		handler.handle(query, "user", "user", "MapperParsingException[failed to parse]");
+		handler.handle(query, "user", "user", "MapperParsingException[failed to parse]");
+		BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			int lines = 0;
+			for (String line = reader.readLine(); null != line; line = reader.readLine()) {
+				assertTrue(line.startsWith("{\"index\":\"user\",\"type\":\"user\",\"id\":\"1\""));
+				assertTrue(line.endsWith("}"));
+				Map<String, Object> letter = XContentHelper.convertToMap(line.getBytes("UTF-8"), false).v2();
+				assertEquals("MapperParsingException[failed to parse]", letter.get("failure"));
+				assertEquals("u1", JsonHelper.fromJsonString((String) letter.get("source"), User.class).getUsername());
+				lines++;
+			}
+			assertEquals(2, lines);
+		} finally {
+			reader.close();
+		}
+	}
+}
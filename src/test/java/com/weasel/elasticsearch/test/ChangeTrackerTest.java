@@ -0,0 +1,43 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.ChangeTracker;
+
+/**
+ * @author Dylan
+ */
+public class ChangeTrackerTest {
+
+	@Test
+	@SuppressWarnings("unchecked")
+	public void diff() {
+		ChangeTracker tracker = new ChangeTracker(10);
+		tracker.snapshot("1", new BytesArray("{\"id\":1,\"username\":\"u1\",\"password\":\"p1\",\"address\":{\"province\":\"gd\",\"city\":\"gz\"}}"));
+		Map<String, Object> current = ChangeTracker.toMap(new BytesArray(
+				"{\"id\":1,\"username\":\"u1\",\"address\":{\"province\":\"gd\",\"city\":\"sz\"}}"));
+		Map<String, Object> changes = tracker.diff("1", current);
+		assertEquals(2, changes.size());
+		assertTrue(changes.containsKey("password"));
+		assertNull(changes.get("password"));
+		assertEquals("sz", ((Map<String, Object>) changes.get("address")).get("city"));
+		assertEquals(1, ((Map<String, Object>) changes.get("address")).size());
+	}
+
+	@Test
+	public void unchangedAndUnknown() {
+		ChangeTracker tracker = new ChangeTracker(1);
+		tracker.snapshot("1", new BytesArray("{\"id\":1,\"tags\":[\"a\",\"b\"]}"));
+		assertTrue(tracker.diff("1", ChangeTracker.toMap(new BytesArray("{\"id\":1,\"tags\":[\"a\",\"b\"]}"))).isEmpty());
+		assertNull(tracker.diff("2", ChangeTracker.toMap(new BytesArray("{\"id\":2}"))));
+		tracker.snapshot("2", new BytesArray("{\"id\":2}"));
+		assertNull("evicted by the capacity of 1", tracker.diff("1", ChangeTracker.toMap(new BytesArray("{\"id\":1}"))));
+	}
+}
@@ -0,0 +1,59 @@
+package com.weasel.elasticsearch.test;
+
+import static org.elasticsearch.index.query.QueryBuilders.prefixQuery;
+
+import org.elasticsearch.index.query.QueryBuilder;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.core.Page;
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.ElasticsearchRepository;
+import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
+import com.weasel.elasticsearch.core.query.SearchQuery;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * 比较先count再查询(原来search(QueryBuilder)的做法)和queryForAll一次往返的延迟
+ * 
+ * @author Dylan
+ */
+public class CountlessSearchBenchmarkTest extends AbstractBenchmarkTest {
+
+	private static final int WARMUP = 50;
+	private static final int ITERATIONS = 500;
+
+	@Autowired
+	private ElasticsearchRepository repository;
+
+	@Test
+	public void compareRoundTrips() {
+		saveUsers(2000, false);
+
+		// u1, u10..u19, u100..u199, u1000..u1999: 1111 hits, more than one scroll batch
+		String[] prefixes = { "u19", "u1" };
+		for (String prefix : prefixes) {
+			QueryBuilder query = prefixQuery("username", prefix);
+			System.out.println(String.format("prefix %-4s count + search: %7.3f ms, queryForAll: %7.3f ms", prefix,
+					averageMillis(WARMUP, ITERATIONS, search(query, true)), averageMillis(WARMUP, ITERATIONS, search(query, false))));
+		}
+	}
+
+	private Run search(final QueryBuilder query, final boolean countFirst) {
+		return new Run() {
+			@Override
+			public void run(int i) {
+				SearchQuery searchQuery = new NativeSearchQueryBuilder().withQuery(query).build();
+				if (countFirst) {
+					int count = (int) repository.count(searchQuery, User.class);
+					Page<User> page = new Page<User>();
+					page.setPageSize(count);
+					searchQuery.setPageable(page);
+					DemonPredict.isTrue(repository.queryForPage(searchQuery, User.class).getResult().size() == count);
+				} else {
+					DemonPredict.notNull(repository.queryForAll(searchQuery, User.class).getResult());
+				}
+			}
+		};
+	}
+}
@@ -0,0 +1,100 @@
+package com.weasel.elasticsearch.test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.ElasticsearchRepository;
+import com.weasel.elasticsearch.core.bulk.BulkDispatchMode;
+import com.weasel.elasticsearch.core.bulk.BulkPartitionStats;
+import com.weasel.elasticsearch.core.bulk.BulkProcessorListener;
+import com.weasel.elasticsearch.core.bulk.ElasticsearchBulkProcessor;
+import com.weasel.elasticsearch.core.bulk.PartitionedBulkResult;
+import com.weasel.elasticsearch.core.query.IndexQuery;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * @author Dylan
+ */
+public class ElasticsearchBulkProcessorTest extends AbstractESTest {
+
+	@Autowired
+	private ElasticsearchRepository repository;
+
+	@Autowired
+	private UserElasticserarchRepository userRepository;
+
+	@Test
+	public void bulkProcessor() throws InterruptedException {
+		userRepository.deleteAll();
+		final AtomicInteger bulks = new AtomicInteger();
+		ElasticsearchBulkProcessor processor = repository.prepareBulkProcessor()
+														 .withBulkActions(10)
+														 .withConcurrentRequests(2)
+														 .withFlushInterval(1, TimeUnit.SECONDS)
+														 .withListener(new BulkProcessorListener() {
+
+															 @Override
+															 public void beforeBulk(long executionId, BulkRequest request) {
+															 }
+
+															 @Override
+															 public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+																 bulks.incrementAndGet();
+															 }
+
+															 @Override
+															 public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+															 }
+														 })
+														 .build();
+		int saveSize = 25;
+		for (int i = 0; i < saveSize; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setUsername("u" + i);
+			IndexQuery query = new IndexQuery();
+			query.setId(String.valueOf(i));
+			query.setObject(user);
+			processor.add(query);
+		}
+		DemonPredict.isTrue(processor.awaitClose(10, TimeUnit.SECONDS));
+		DemonPredict.isTrue(bulks.get() == 3);
+		repository.refresh(User.class, true);
+		DemonPredict.isTrue(userRepository.count() == saveSize);
+	}
+
+	@Test
+	public void partitionedBulkIndex() {
+		userRepository.deleteAll();
+		List<IndexQuery> queries = new ArrayList<IndexQuery>();
+		int saveSize = 100;
+		for (int i = 0; i < saveSize; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setUsername("u" + i);
+			IndexQuery query = new IndexQuery();
+			query.setId(String.valueOf(i));
+			query.setObject(user);
+			queries.add(query);
+		}
+		PartitionedBulkResult result = repository.bulkIndex(queries, BulkDispatchMode.SHARD);
+		for (BulkPartitionStats stats : result.getPartitions().values()) {
+			System.out.println(stats);
+		}
+		DemonPredict.isTrue(!result.hasFailures());
+		DemonPredict.isTrue(result.getSucceeded() == saveSize);
+		for (int i = 0; i < saveSize; i++) {
+			DemonPredict.isTrue(String.valueOf(i).equals(result.getItems().get(i).getId()));
+		}
+		repository.refresh(User.class, true);
+		DemonPredict.isTrue(userRepository.count() == saveSize);
+	}
+}
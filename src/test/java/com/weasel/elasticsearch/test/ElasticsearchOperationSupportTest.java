@@ -1,10 +1,21 @@
 package com.weasel.elasticsearch.test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import org.elasticsearch.action.search.SearchResponse;
 import org.elasticsearch.index.query.BoolQueryBuilder;
@@ -30,12 +41,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import com.weasel.core.EsPage;
 import com.weasel.core.Page;
 import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.CloseableIterator;
+import com.weasel.elasticsearch.core.ElasticsearchOperations;
 import com.weasel.elasticsearch.core.HighlightFieldResultParser;
+import com.weasel.elasticsearch.core.LazyResultList;
+import com.weasel.elasticsearch.core.MultiGetResult;
+import com.weasel.elasticsearch.core.MultiSearchResult;
+import com.weasel.elasticsearch.core.RefreshPolicy;
 import com.weasel.elasticsearch.core.SearchResultParser;
+import com.weasel.elasticsearch.core.bulk.BulkProgress;
+import com.weasel.elasticsearch.core.bulk.BulkProgressListener;
+import com.weasel.elasticsearch.core.bulk.BulkResult;
 import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
 import com.weasel.elasticsearch.core.query.SearchQuery;
 import com.weasel.elasticsearch.test.domain.Address;
 import com.weasel.elasticsearch.test.domain.User;
+import com.weasel.elasticsearch.test.domain.UserName;
 import com.weasel.helper.JsonHelper;
 
 /**
@@ -47,6 +68,9 @@ public class ElasticsearchOperationSupportTest extends AbstractESTest{
 	@Autowired
 	private UserElasticserarchRepository repository;
 	
+	@Autowired
+	private ElasticsearchOperations operations;
+	
 	@Test
 	public void createIndex(){
 		DemonPredict.notNull(repository);
@@ -78,6 +102,45 @@ public class ElasticsearchOperationSupportTest extends AbstractESTest{
 		DemonPredict.isTrue(repository.count() == saveSize);
 	}
 	
+	@Test
+	public void saveIterator(){
+		repository.deleteAll();
+		final int saveSize = 2500;
+		Iterator<User> users = new Iterator<User>() {
+			
+			private int i = 0;
+			
+			@Override
+			public boolean hasNext() {
+				return i < saveSize;
+			}
+
+			@Override
+			public User next() {
+				User user = new User();
+				user.setId(i);
+				user.setUsername("u"+i);
+				i++;
+				return user;
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+		BulkProgress progress = repository.save(users, 1000, new BulkProgressListener() {
+			
+			@Override
+			public void onProgress(BulkProgress progress) {
+				System.out.println(progress);
+			}
+		});
+		DemonPredict.isTrue(progress.getDocuments() == saveSize);
+		DemonPredict.isTrue(progress.getFailed() == 0);
+		DemonPredict.isTrue(repository.count() == saveSize);
+	}
+	
 	@Test
 	public void findOne(){
 		repository.deleteAll();
@@ -120,6 +183,228 @@ public class ElasticsearchOperationSupportTest extends AbstractESTest{
 		DemonPredict.isTrue(null == user);
 	}
 	
+	@Test
+	public void updateList(){
+		saveList();
+		List<User> users = new ArrayList<User>();
+		for(int i = 0;i < 25;i++){
+			User user = new User();
+			user.setId(i);
+			user.setUsername("updated"+i);
+			users.add(user);
+		}
+		BulkResult result = repository.update(users, true);
+		DemonPredict.isTrue(!result.hasFailures());
+		DemonPredict.isTrue(result.getItems().size() == 25);
+		DemonPredict.isTrue("updated3".equals(repository.findOne(3).getUsername()));
+		DemonPredict.isTrue("p3".equals(repository.findOne(3).getPassword()));
+	}
+	
+	@Test
+	public void deleteByIds(){
+		saveList();
+		List<Integer> ids = new ArrayList<Integer>();
+		for(int i = 0;i < 10;i++){
+			ids.add(i);
+		}
+		BulkResult result = repository.deleteByIds(ids);
+		DemonPredict.isTrue(!result.hasFailures());
+		DemonPredict.isTrue(result.getSucceeded() == 10);
+		DemonPredict.isTrue(repository.count() == 10);
+	}
+	
+	@Test
+	public void coalescedRefresh(){
+		UserElasticsearchOperation operation = (UserElasticsearchOperation) repository;
+		operation.setRefreshPolicy(RefreshPolicy.COALESCED);
+		try{
+			saveList();
+			repository.awaitRefresh();
+			DemonPredict.isTrue(repository.count() == 20);
+		}finally{
+			operation.setRefreshPolicy(RefreshPolicy.IMMEDIATE);
+		}
+	}
+	
+	@Test
+	public void findAllByIds(){
+		saveList();
+		MultiGetResult<User> users = repository.findAll(Arrays.asList(3, 99, 1));
+		DemonPredict.isTrue(users.size() == 2);
+		DemonPredict.isTrue(users.getResults().get(0).getId() == 3);
+		DemonPredict.isTrue(users.getResults().get(1).getId() == 1);
+		DemonPredict.isTrue(users.getMissingIds().equals(Arrays.asList("99")));
+	}
+	
+	@Test
+	public void existsAll(){
+		saveList();
+		DemonPredict.isTrue(repository.exists(5));
+		DemonPredict.isTrue(!repository.exists(99));
+		Set<Integer> existing = repository.existsAll(Arrays.asList(99, 5, 2));
+		DemonPredict.isTrue(existing.size() == 2 && existing.contains(5) && existing.contains(2));
+	}
+	
+	@Test
+	public void stream(){
+		saveIterator();
+		CloseableIterator<User> users = repository.stream(QueryBuilders.matchAllQuery());
+		int count = 0;
+		try{
+			while(users.hasNext()){
+				DemonPredict.notNull(users.next());
+				count++;
+			}
+		}finally{
+			users.close();
+		}
+		DemonPredict.isTrue(count == 2500);
+		
+		users = repository.stream(QueryBuilders.prefixQuery("username", "u"));
+		DemonPredict.isTrue(users.hasNext());
+		users.close();
+		DemonPredict.isTrue(!users.hasNext());
+	}
+	
+	@Test
+	public void projection(){
+		saveList();
+		Page<User> page = new Page<User>();
+		page.setPageSize(5);
+		SearchQuery query = new NativeSearchQueryBuilder().withQuery(QueryBuilders.matchAllQuery()).withPageable(page).build();
+		EsPage<UserName> names = repository.search(query, UserName.class);
+		DemonPredict.isTrue(names.getResult().size() == 5);
+		for(UserName name : names.getResult()){
+			DemonPredict.isTrue(name.getUsername().startsWith("u"));
+		}
+	}
+	
+	@Test
+	public void lazyResults(){
+		saveList();
+		Page<User> page = new Page<User>();
+		page.setPageSize(5);
+		SearchQuery query = new NativeSearchQueryBuilder().withQuery(QueryBuilders.matchAllQuery()).withPageable(page).withLazyResults(true).build();
+		EsPage<User> users = repository.search(query);
+		LazyResultList<User> results = (LazyResultList<User>) users.getResult();
+		DemonPredict.isTrue(results.size() == 5 && results.getMaterializedCount() == 0);
+		DemonPredict.isTrue(results.get(0).getUsername().startsWith("u"));
+		DemonPredict.isTrue(results.get(0) == results.get(0) && results.getMaterializedCount() == 1);
+		results.release();
+		DemonPredict.isTrue(results.getMaterializedCount() == 5);
+		for(User user : results){
+			DemonPredict.isTrue(user.getUsername().startsWith("u"));
+		}
+	}
+	
+	@Test
+	public void multiSearch(){
+		saveList();
+		List<SearchQuery> queries = new ArrayList<SearchQuery>();
+		for(int i = 1; i <= 3; i++){
+			queries.add(new NativeSearchQueryBuilder().withQuery(QueryBuilders.prefixQuery("username", "u" + i)).build());
+		}
+		MultiSearchResult<User> result = repository.search(queries);
+		DemonPredict.isTrue(result.size() == 3 && !result.hasFailures());
+		// u1 and u10..u19
+		DemonPredict.isTrue(result.getPage(0).getTotalCount() == 11);
+		DemonPredict.isTrue(result.getPage(1).getTotalCount() == 1);
+	}
+	
+	@Test
+	public void parallelParsing(){
+		saveIterator();
+		Page<User> page = new Page<User>();
+		page.setPageSize(2500);
+		page.addSorts("id", Page.Sort.ASC);
+		SearchQuery query = new NativeSearchQueryBuilder().withQuery(QueryBuilders.matchAllQuery()).withPageable(page).build();
+		List<Integer> sequential = ids(operations.queryForPage(query, User.class).getResult());
+		DemonPredict.isTrue(sequential.size() == 2500);
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		// every chunk fails, the caller must see the failure instead of a short page
+		ExecutorService failing = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>()){
+			@Override
+			protected <V> RunnableFuture<V> newTaskFor(Callable<V> callable) {
+				return new FutureTask<V>(new Callable<V>() {
+					@Override
+					public V call() {
+						throw new IllegalStateException("chunk failed");
+					}
+				});
+			}
+		};
+		try{
+			operations.setParallelParsing(executor, 1, 100);
+			List<Integer> parallel = ids(operations.queryForPage(query, User.class).getResult());
+			DemonPredict.isTrue(parallel.equals(sequential));
+			for(int i = 1; i < parallel.size(); i++){
+				DemonPredict.isTrue(parallel.get(i - 1) < parallel.get(i));
+			}
+			
+			operations.setParallelParsing(failing, 1, 100);
+			boolean failed = false;
+			try{
+				operations.queryForPage(query, User.class);
+			}catch(IllegalStateException e){
+				failed = "chunk failed".equals(e.getMessage());
+			}
+			DemonPredict.isTrue(failed);
+		}finally{
+			operations.setParallelParsing(null, 1000, 250);
+			executor.shutdown();
+			failing.shutdown();
+		}
+	}
+	
+	private static List<Integer> ids(List<User> users){
+		List<Integer> ids = new ArrayList<Integer>(users.size());
+		for(User user : users){
+			ids.add(user.getId());
+		}
+		return ids;
+	}
+	
+	@Test
+	public void writeBehind(){
+		UserElasticsearchOperation operation = (UserElasticsearchOperation) repository;
+		operation.enableWriteBehind(100, 60000);
+		try{
+			for(int i = 0; i < 3; i++){
+				User user = new User();
+				user.setId(100);
+				user.setUsername("w"+i);
+				repository.save(user);
+			}
+			DemonPredict.isTrue("w2".equals(repository.findOne(100).getUsername()));
+			
+			// the buffered write is encoded on save, changing the saved or the returned entity does not change it
+			User saved = new User();
+			saved.setId(101);
+			saved.setUsername("saved");
+			repository.save(saved);
+			saved.setUsername("changed");
+			repository.findOne(101).setUsername("changed");
+			DemonPredict.isTrue("saved".equals(repository.findOne(101).getUsername()));
+			repository.flush();
+			DemonPredict.isTrue("w2".equals(repository.findOne(100).getUsername()));
+			
+			// a bulk save must not be overwritten by an older buffered write of the same id
+			User buffered = new User();
+			buffered.setId(100);
+			buffered.setUsername("old");
+			repository.save(buffered);
+			User newer = new User();
+			newer.setId(100);
+			newer.setUsername("new");
+			repository.save(Collections.singleton(newer));
+			repository.flush();
+			DemonPredict.isTrue("new".equals(repository.findOne(100).getUsername()));
+		}finally{
+			operation.destroy();
+		}
+	}
+	
 	@Test
 	public void search1(){
 		Page<User> page = new Page<User>();
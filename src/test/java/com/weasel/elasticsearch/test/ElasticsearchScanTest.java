@@ -0,0 +1,129 @@
+package com.weasel.elasticsearch.test;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.core.Page;
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.CloseableIterator;
+import com.weasel.elasticsearch.core.CursorPage;
+import com.weasel.elasticsearch.core.ElasticsearchRepository;
+import com.weasel.elasticsearch.core.ScanConsumer;
+import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
+import com.weasel.elasticsearch.exception.ElasticsearchException;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * @author Dylan
+ */
+public class ElasticsearchScanTest extends AbstractESTest {
+
+	@Autowired
+	private ElasticsearchRepository repository;
+
+	@Autowired
+	private UserElasticserarchRepository userRepository;
+
+	@Test
+	public void parallelScan() {
+		int saveSize = saveUsers(1200);
+		final AtomicInteger consumed = new AtomicInteger();
+		long scanned = repository.scan(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).build(), User.class, 4,
+				new ScanConsumer<User>() {
+					@Override
+					public void accept(int slice, User entity) {
+						consumed.incrementAndGet();
+					}
+				});
+		DemonPredict.isTrue(scanned == saveSize);
+		DemonPredict.isTrue(consumed.get() == saveSize);
+	}
+
+	@Test
+	public void parallelIterate() {
+		int saveSize = saveUsers(1200);
+		CloseableIterator<User> users = repository.parallelIterate(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).build(), User.class, 4);
+		int count = 0;
+		try {
+			while (users.hasNext()) {
+				DemonPredict.notNull(users.next());
+				count++;
+			}
+		} finally {
+			users.close();
+		}
+		DemonPredict.isTrue(count == saveSize);
+	}
+
+	@Test
+	public void cursorPagination() {
+		DemonPredict.isTrue(readByCursor(0) == saveUsers(25));
+	}
+
+	@Test
+	public void pointInTimeCursorPagination() {
+		DemonPredict.isTrue(readByCursor(60000) == saveUsers(25));
+	}
+
+	@Test(expected = ElasticsearchException.class)
+	public void cursorPaginationWithMissingSortValue() {
+		userRepository.deleteAll();
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < 25; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setUsername("u" + i);
+			// only a few documents have the sort field, the first page ends on one which lacks it
+			if (i < 5) {
+				user.setPassword("p" + i);
+			}
+			users.add(user);
+		}
+		userRepository.save(users);
+		Page<User> page = new Page<User>();
+		page.setPageSize(10);
+		page.addSorts("password", Page.Sort.ASC);
+		userRepository.searchByCursor(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).withPageable(page).build());
+	}
+
+	private int readByCursor(long pointInTime) {
+		Set<Integer> ids = new HashSet<Integer>();
+		Page<User> page = new Page<User>();
+		page.setPageSize(10);
+		String cursor = null;
+		int pages = 0;
+		do {
+			CursorPage<User> result = userRepository.searchByCursor(new NativeSearchQueryBuilder().withQuery(matchAllQuery()).withPageable(page)
+					.withCursor(cursor).withPointInTime(pointInTime).build());
+			for (User user : result.getResult()) {
+				DemonPredict.isTrue(ids.add(user.getId()));
+			}
+			cursor = result.getNextCursor();
+			pages++;
+		} while (null != cursor);
+		DemonPredict.isTrue(pages == 3);
+		return ids.size();
+	}
+
+	private int saveUsers(int saveSize) {
+		userRepository.deleteAll();
+		List<User> users = new ArrayList<User>();
+		for (int i = 0; i < saveSize; i++) {
+			User user = new User();
+			user.setId(i);
+			user.setPassword("p" + i);
+			user.setUsername("u" + i);
+			users.add(user);
+		}
+		userRepository.save(users);
+		return saveSize;
+	}
+}
@@ -0,0 +1,98 @@
+package com.weasel.elasticsearch.test;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.codec.EntityCodecRegistry;
+import com.weasel.elasticsearch.core.codec.XContentEntityCodec;
+import com.weasel.elasticsearch.test.domain.Address;
+import com.weasel.elasticsearch.test.domain.User;
+import com.weasel.helper.JsonHelper;
+
+/**
+ * 测量每个文档的序列化分配的字节数和耗时:原来的toJsonString + getBytes,默认的JsonHelper路径,
+ * 以及手写的XContentEntityCodec.需要HotSpot的线程分配计数,和其他基准测试一样用-Dbenchmark=true运行
+ * 
+ * @author Dylan
+ */
+public class EntityCodecBenchmarkTest {
+
+	private static final int WARMUP = 100000;
+	private static final int ITERATIONS = 1000000;
+
+	private final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	@Before
+	public void onlyWhenAsked() {
+		Assume.assumeTrue(Boolean.getBoolean("benchmark"));
+	}
+
+	@Test
+	public void measureAllocation() throws IOException {
+		final User user = new User();
+		user.setId(1);
+		user.setUsername("张三");
+		user.setPassword("p1");
+		Address address = new Address();
+		address.setProvince("广东");
+		address.setCity("广州");
+		user.setAddress(address);
+
+		final EntityCodecRegistry defaultRegistry = new EntityCodecRegistry();
+		final EntityCodecRegistry handWritten = new EntityCodecRegistry();
+		handWritten.register(User.class, new XContentEntityCodec<User>(User.class) {
+
+			@Override
+			protected void writeFields(User entity, XContentBuilder builder) throws IOException {
+				builder.field("id", entity.getId()).field("username", entity.getUsername()).field("password", entity.getPassword());
+				builder.startObject("address").field("province", entity.getAddress().getProvince()).field("city", entity.getAddress().getCity())
+						.endObject();
+			}
+		});
+
+		report("toJsonString + getBytes", new Encoder() {
+			@Override
+			public Object encode() throws IOException {
+				return new BytesArray(JsonHelper.toJsonString(user).getBytes("UTF-8"));
+			}
+		});
+		report("default (JsonHelper)", new Encoder() {
+			@Override
+			public Object encode() {
+				return defaultRegistry.encode(user);
+			}
+		});
+		report("XContentEntityCodec", new Encoder() {
+			@Override
+			public Object encode() {
+				return handWritten.encode(user);
+			}
+		});
+	}
+
+	private void report(String name, Encoder encoder) throws IOException {
+		for (int i = 0; i < WARMUP; i++) {
+			encoder.encode();
+		}
+		long thread = Thread.currentThread().getId();
+		long allocated = threads.getThreadAllocatedBytes(thread);
+		long start = System.nanoTime();
+		for (int i = 0; i < ITERATIONS; i++) {
+			encoder.encode();
+		}
+		long nanos = System.nanoTime() - start;
+		allocated = threads.getThreadAllocatedBytes(thread) - allocated;
+		System.out.println(String.format("%-26s %7.1f bytes/doc, %7.1f ns/doc", name, (double) allocated / ITERATIONS, (double) nanos / ITERATIONS));
+	}
+
+	private interface Encoder {
+
+		Object encode() throws IOException;
+	}
+}
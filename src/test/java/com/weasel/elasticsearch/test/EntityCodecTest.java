@@ -0,0 +1,247 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentBuilder;
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.codec.BeanProperties;
+import com.weasel.elasticsearch.core.codec.EntityCodecRegistry;
+import com.weasel.elasticsearch.core.codec.PooledByteArrayOutputStream;
+import com.weasel.elasticsearch.core.codec.XContentEntityCodec;
+import com.weasel.elasticsearch.test.domain.Address;
+import com.weasel.elasticsearch.test.domain.User;
+import com.weasel.helper.JsonHelper;
+
+/**
+ * @author Dylan
+ */
+public class EntityCodecTest {
+
+	@Test
+	public void writeUtf8() throws IOException {
+		String value = "u1 张三 😀 end";
+		PooledByteArrayOutputStream out = new PooledByteArrayOutputStream(4);
+		out.writeUtf8(value);
+		assertArrayEquals(value.getBytes("UTF-8"), Arrays.copyOf(out.buffer(), out.size()));
+	}
+
+	@Test
+	public void defaultCodec() throws IOException {
+		User user = new User();
+		user.setId(1);
+		user.setUsername("张三");
+		BytesReference source = new EntityCodecRegistry().encode(user);
+		assertEquals(JsonHelper.toJsonString(user), source.toUtf8());
+	}
+
+	@Test
+	public void registeredCodec() {
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		registry.register(User.class, new XContentEntityCodec<User>(User.class) {
+
+			@Override
+			protected void writeFields(User entity, XContentBuilder builder) throws IOException {
+				builder.field("id", entity.getId()).field("username", entity.getUsername());
+			}
+		});
+		User user = new User();
+		user.setId(1);
+		user.setUsername("u1");
+		assertEquals("{\"id\":1,\"username\":\"u1\"}", registry.encode(user).toUtf8());
+	}
+
+	@Test
+	public void compiledDecode() {
+		User user = new User();
+		user.setId(7);
+		user.setUsername("张三");
+		Address address = new Address();
+		address.setProvince("广东");
+		address.setCity("广州");
+		user.setAddress(address);
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		User decoded = registry.decode(registry.encode(user), User.class);
+		assertEquals(Integer.valueOf(7), decoded.getId());
+		assertEquals("张三", decoded.getUsername());
+		assertNull(decoded.getPassword());
+		assertEquals("广州", decoded.getAddress().getCity());
+		assertEquals(JsonHelper.toJsonString(user), JsonHelper.toJsonString(decoded));
+	}
+
+	@Test
+	public void compiledDecodeBindsProperties() {
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		Account account = registry.decode(new BytesArray("{\"active\":true,\"level\":\"3\"}"), Account.class);
+		assertTrue(account.isActive());
+		assertEquals(3, account.getLevel());
+		assertEquals(0, registry.getFallbacks());
+	}
+
+	@Test
+	public void propertyNames() {
+		// named like the json keys, not like the fields
+		assertEquals(new HashSet<String>(Arrays.asList("active", "level")), BeanProperties.setters(Account.class).keySet());
+		assertEquals(Collections.singleton("username"), BeanProperties.setters(Profile.class).keySet());
+	}
+
+	@Test
+	public void compiledDecodeOfParsedSource() {
+		Map<String, Object> source = new HashMap<String, Object>();
+		source.put("active", Boolean.TRUE);
+		source.put("level", Integer.valueOf(3));
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		Account account = registry.decode(source, Account.class);
+		assertTrue(account.isActive());
+		assertEquals(3, account.getLevel());
+		assertEquals(0, registry.getFallbacks());
+	}
+
+	@Test
+	public void outOfRangeNumberIsNotNarrowed() {
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		Account account;
+		try {
+			account = registry.decode(new BytesArray("{\"active\":true,\"level\":300}"), Account.class);
+		} catch (RuntimeException e) {
+			// JsonHelper may reject the value as well
+			account = null;
+		}
+		assertEquals(1, registry.getFallbacks());
+		assertTrue(null == account || 44 != account.getLevel());
+	}
+
+	@Test
+	public void fallbackDecode() {
+		// nickname has no setter, the compiled reader hands the document to JsonHelper
+		String json = JsonHelper.toJsonString(new Profile("u1", "nick"));
+		EntityCodecRegistry jsonHelper = new EntityCodecRegistry();
+		jsonHelper.setCompiledReaders(false);
+		Profile expected = jsonHelper.decode(new BytesArray(json), Profile.class);
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		Profile decoded = registry.decode(new BytesArray(json), Profile.class);
+		assertEquals(1, registry.getFallbacks());
+		assertEquals(JsonHelper.toJsonString(expected), JsonHelper.toJsonString(decoded));
+	}
+
+	@Test
+	public void annotatedPropertiesAreNotCompiled() {
+		assertEquals(Collections.singleton("nickname"), BeanProperties.annotated(Member.class));
+		assertEquals(new HashSet<String>(Arrays.asList("nickname", "username")), BeanProperties.annotated(Renamed.class));
+		EntityCodecRegistry registry = new EntityCodecRegistry();
+		assertTrue(registry.isCompiled(Account.class));
+		assertFalse(registry.isCompiled(Member.class));
+		assertFalse(registry.isCompiled(Renamed.class));
+		Member member = registry.decode(new BytesArray("{\"username\":\"u1\",\"nickname\":\"nick\"}"), Member.class);
+		assertEquals("u1", member.getUsername());
+		assertEquals(0, registry.getFallbacks());
+	}
+
+	/**
+	 * stands for a JsonHelper (Jackson) annotation which renames or ignores a property
+	 */
+	@Retention(RetentionPolicy.RUNTIME)
+	@Target({ ElementType.FIELD, ElementType.METHOD })
+	public @interface JsonMapped {
+	}
+
+	public static class Member {
+
+		private String username;
+		@JsonMapped
+		private String nickname;
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getNickname() {
+			return nickname;
+		}
+
+		public void setNickname(String nickname) {
+			this.nickname = nickname;
+		}
+	}
+
+	/**
+	 * the annotation of the overridden getter applies as well
+	 */
+	public static class Renamed extends Member {
+
+		@Override
+		@JsonMapped
+		public String getUsername() {
+			return super.getUsername();
+		}
+	}
+
+	public static class Account {
+
+		private boolean active;
+		private byte level;
+
+		public boolean isActive() {
+			return active;
+		}
+
+		public void setActive(boolean active) {
+			this.active = active;
+		}
+
+		public byte getLevel() {
+			return level;
+		}
+
+		public void setLevel(byte level) {
+			this.level = level;
+		}
+	}
+
+	public static class Profile {
+
+		private String username;
+		private String nickname;
+
+		public Profile() {
+		}
+
+		Profile(String username, String nickname) {
+			this.username = username;
+			this.nickname = nickname;
+		}
+
+		public String getUsername() {
+			return username;
+		}
+
+		public void setUsername(String username) {
+			this.username = username;
+		}
+
+		public String getNickname() {
+			return nickname;
+		}
+	}
+}
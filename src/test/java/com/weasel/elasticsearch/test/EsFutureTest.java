@@ -0,0 +1,134 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.async.EsFuture;
+import com.weasel.elasticsearch.core.async.FutureListener;
+import com.weasel.elasticsearch.core.async.Transformer;
+
+/**
+ * @author Dylan
+ */
+public class EsFutureTest {
+
+	@Test
+	public void mapOnExecutor() throws Exception {
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			EsFuture<Integer> future = new EsFuture<Integer>();
+			EsFuture<String> mapped = future.map(new Transformer<Integer, String>() {
+				@Override
+				public String apply(Integer input) {
+					return "v" + input;
+				}
+			}, executor);
+			assertFalse(mapped.isDone());
+			future.complete(1);
+			assertEquals("v1", mapped.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void flatMapPassesFailures() throws Exception {
+		EsFuture<Integer> future = new EsFuture<Integer>();
+		EsFuture<Integer> chained = future.flatMap(new Transformer<Integer, EsFuture<Integer>>() {
+			@Override
+			public EsFuture<Integer> apply(Integer input) {
+				return EsFuture.completed(input + 1);
+			}
+		});
+		IllegalStateException failure = new IllegalStateException("boom");
+		future.fail(failure);
+		try {
+			chained.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(failure, e.getCause());
+		}
+		try {
+			chained.actionGet();
+			fail();
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		}
+	}
+
+	@Test
+	public void allOfKeepsOrder() throws Exception {
+		List<EsFuture<Integer>> futures = new ArrayList<EsFuture<Integer>>();
+		for (int i = 0; i < 3; i++) {
+			futures.add(new EsFuture<Integer>());
+		}
+		EsFuture<List<Integer>> all = EsFuture.allOf(futures);
+		futures.get(2).complete(2);
+		futures.get(0).complete(0);
+		assertFalse(all.isDone());
+		futures.get(1).complete(1);
+		assertEquals(Arrays.asList(0, 1, 2), all.get());
+		assertFalse(futures.get(1).complete(5));
+		assertTrue(futures.get(1).isDone());
+	}
+
+	@Test
+	public void errorInTransformerFailsTheFuture() throws Exception {
+		EsFuture<Integer> future = new EsFuture<Integer>();
+		final AssertionError error = new AssertionError("boom");
+		EsFuture<String> mapped = future.map(new Transformer<Integer, String>() {
+			@Override
+			public String apply(Integer input) {
+				throw error;
+			}
+		}, null);
+		future.complete(1);
+		assertTrue(mapped.isDone());
+		try {
+			mapped.get();
+			fail();
+		} catch (ExecutionException e) {
+			assertSame(error, e.getCause());
+		}
+	}
+
+	@Test
+	public void throwingListenerDoesNotStopTheOthers() {
+		EsFuture<Integer> future = new EsFuture<Integer>();
+		final List<Integer> notified = new ArrayList<Integer>();
+		future.addListener(new FutureListener<Integer>() {
+			@Override
+			public void onSuccess(Integer result) {
+				throw new IllegalStateException("boom");
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+			}
+		});
+		future.addListener(new FutureListener<Integer>() {
+			@Override
+			public void onSuccess(Integer result) {
+				notified.add(result);
+			}
+
+			@Override
+			public void onFailure(Throwable failure) {
+			}
+		});
+		assertTrue(future.complete(1));
+		assertEquals(Arrays.asList(1), notified);
+	}
+}
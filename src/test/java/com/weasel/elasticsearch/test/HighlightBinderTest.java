@@ -0,0 +1,88 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.common.text.StringText;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.highlight.HighlightField;
+import org.junit.Test;
+
+import com.weasel.elasticsearch.annotation.HighlightFragments;
+import com.weasel.elasticsearch.core.highlight.FragmentMergers;
+import com.weasel.elasticsearch.core.highlight.HighlightBinder;
+import com.weasel.elasticsearch.test.domain.Address;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * @author Dylan
+ */
+public class HighlightBinderTest {
+
+	@Test
+	public void nestedPath() {
+		User user = new User();
+		user.setAddress(new Address());
+		new HighlightBinder().bind(highlight(field("username", "<em>u1</em>", "u1 again"), field("address.city", "<em>广州</em>")), user);
+		assertEquals("<em>u1</em>", user.getUsername());
+		assertEquals("<em>广州</em>", user.getAddress().getCity());
+	}
+
+	@Test
+	public void missingParentAndUnknownPath() {
+		User user = new User();
+		new HighlightBinder().bind(highlight(field("address.city", "<em>广州</em>"), field("nickname", "<em>n</em>")), user);
+		assertNull(user.getAddress());
+	}
+
+	@Test
+	public void multiField() {
+		User user = new User();
+		new HighlightBinder().bind(highlight(field("username.pinyin", "<em>zhang</em>")), user);
+		assertEquals("<em>zhang</em>", user.getUsername());
+	}
+
+	@Test
+	public void registeredMerger() {
+		HighlightBinder binder = new HighlightBinder();
+		binder.register(User.class, "username", FragmentMergers.joining("|"));
+		User user = new User();
+		binder.bind(highlight(field("username", "a", "b", "c")), user);
+		assertEquals("a|b|c", user.getUsername());
+	}
+
+	@Test
+	public void annotatedMerger() {
+		Article article = new Article();
+		new HighlightBinder().bind(highlight(field("content", "a", "b"), field("title", "t1", "t2")), article);
+		assertEquals("a ... b", article.content);
+		assertEquals("t1", article.title);
+	}
+
+	private static Map<String, HighlightField> highlight(HighlightField... fields) {
+		Map<String, HighlightField> highlightFields = new HashMap<String, HighlightField>();
+		for (HighlightField field : fields) {
+			highlightFields.put(field.name(), field);
+		}
+		return highlightFields;
+	}
+
+	private static HighlightField field(String name, String... fragments) {
+		Text[] texts = new Text[fragments.length];
+		for (int i = 0; i < fragments.length; i++) {
+			texts[i] = new StringText(fragments[i]);
+		}
+		return new HighlightField(name, texts);
+	}
+
+	static class Article {
+
+		private String title;
+
+		@HighlightFragments
+		private String content;
+	}
+}
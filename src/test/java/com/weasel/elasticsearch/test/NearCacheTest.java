@@ -0,0 +1,77 @@
+package com.weasel.elasticsearch.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import com.weasel.elasticsearch.core.cache.NearCache;
+import com.weasel.elasticsearch.core.cache.NearCache.Storage;
+
+/**
+ * @author Dylan
+ */
+public class NearCacheTest {
+
+	@Test
+	public void lruEviction() {
+		NearCache cache = new NearCache(2, 0, Storage.HEAP);
+		cache.put("1", 1, "a".getBytes(), cache.stamp());
+		cache.put("2", 1, "b".getBytes(), cache.stamp());
+		cache.get("1");
+		cache.put("3", 1, "c".getBytes(), cache.stamp());
+		assertNull(cache.get("2"));
+		assertArrayEquals("a".getBytes(), cache.get("1"));
+		assertEquals(1, cache.getEvictions());
+	}
+
+	@Test
+	public void olderVersionDoesNotReplaceNewer() {
+		NearCache cache = new NearCache(10, 0, Storage.OFF_HEAP);
+		cache.put("1", 5, "new".getBytes(), cache.stamp());
+		cache.put("1", 4, "old".getBytes(), cache.stamp());
+		assertArrayEquals("new".getBytes(), cache.get("1"));
+		assertEquals(5, cache.getVersion("1"));
+		cache.invalidate("1");
+		assertNull(cache.get("1"));
+	}
+
+	@Test
+	public void readRacingWithWriteIsNotCached() {
+		NearCache cache = new NearCache(10, 0, Storage.HEAP);
+		long stamp = cache.stamp();
+		// the write completes while the read of version 1 is in flight
+		cache.invalidate("1", 2);
+		assertFalse(cache.put("1", 1, "old".getBytes(), stamp));
+		assertNull(cache.get("1"));
+		// a read which started after the write but still returned an older version
+		assertFalse(cache.put("1", 1, "old".getBytes(), cache.stamp()));
+		cache.put("1", 2, "new".getBytes(), cache.stamp());
+		assertArrayEquals("new".getBytes(), cache.get("1"));
+	}
+
+	@Test
+	public void readRacingWithClearIsNotCached() {
+		NearCache cache = new NearCache(1, 0, Storage.HEAP);
+		long stamp = cache.stamp();
+		cache.clear();
+		assertFalse(cache.put("1", 1, "old".getBytes(), stamp));
+		// the tombstone of 1 is evicted by the one of 2, reads which started before are rejected anyway
+		stamp = cache.stamp();
+		cache.invalidate("1");
+		cache.invalidate("2");
+		assertFalse(cache.put("1", 1, "old".getBytes(), stamp));
+		assertEquals(0, cache.size());
+	}
+
+	@Test
+	public void expiry() throws InterruptedException {
+		NearCache cache = new NearCache(10, 20, Storage.HEAP);
+		cache.put("1", 1, "a".getBytes(), cache.stamp());
+		Thread.sleep(50);
+		assertNull(cache.get("1"));
+		assertEquals(0, cache.size());
+	}
+}
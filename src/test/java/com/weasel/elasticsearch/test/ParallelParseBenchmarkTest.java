@@ -0,0 +1,67 @@
+package com.weasel.elasticsearch.test;
+
+import static org.elasticsearch.index.query.QueryBuilders.matchAllQuery;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import com.weasel.core.EsPage;
+import com.weasel.core.Page;
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.ElasticsearchOperations;
+import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
+import com.weasel.elasticsearch.core.query.SearchQuery;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * 比较大页面顺序反序列化和并行反序列化的耗时,用于调整setParallelParsing的阈值和块大小
+ * 
+ * @author Dylan
+ */
+public class ParallelParseBenchmarkTest extends AbstractBenchmarkTest {
+
+	private static final int WARMUP = 20;
+	private static final int ITERATIONS = 100;
+
+	@Autowired
+	private ElasticsearchOperations operations;
+
+	@Test
+	public void compareParsing() {
+		saveUsers(10000, true);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+		try {
+			int[] pageSizes = { 1000, 5000, 10000 };
+			int[] chunkSizes = { 250, 1000 };
+			for (int pageSize : pageSizes) {
+				operations.setParallelParsing(null, 1, 1);
+				double sequential = averageMillis(WARMUP, ITERATIONS, search(pageSize));
+				for (int chunkSize : chunkSizes) {
+					operations.setParallelParsing(executor, 1, chunkSize);
+					System.out.println(String.format("%5d hits sequential: %8.3f ms, parallel (chunk %4d): %8.3f ms", pageSize, sequential, chunkSize,
+							averageMillis(WARMUP, ITERATIONS, search(pageSize))));
+				}
+			}
+		} finally {
+			operations.setParallelParsing(null, 1000, 250);
+			executor.shutdown();
+		}
+	}
+
+	private Run search(final int pageSize) {
+		return new Run() {
+			@Override
+			public void run(int i) {
+				Page<User> page = new Page<User>();
+				page.setPageSize(pageSize);
+				SearchQuery query = new NativeSearchQueryBuilder().withQuery(matchAllQuery()).withPageable(page).build();
+				EsPage<User> result = operations.queryForPage(query, User.class);
+				DemonPredict.isTrue(result.getResult().size() == pageSize);
+			}
+		};
+	}
+}
@@ -0,0 +1,52 @@
+package com.weasel.elasticsearch.test;
+
+import static org.elasticsearch.index.query.QueryBuilders.prefixQuery;
+
+import org.elasticsearch.action.search.SearchType;
+import org.elasticsearch.index.query.FilterBuilders;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.junit.Test;
+
+import com.weasel.core.Page;
+import com.weasel.core.helper.DemonPredict;
+import com.weasel.elasticsearch.core.query.NativeSearchQueryBuilder;
+import com.weasel.elasticsearch.test.domain.User;
+
+/**
+ * 在本地测试节点上比较各个search type的查询延迟
+ * 
+ * @author Dylan
+ */
+public class SearchTypeBenchmarkTest extends AbstractBenchmarkTest {
+
+	private static final int WARMUP = 50;
+	private static final int ITERATIONS = 500;
+
+	@Test
+	public void compareSearchTypes() {
+		saveUsers(2000, false);
+
+		SearchType[] searchTypes = { SearchType.DFS_QUERY_THEN_FETCH, SearchType.QUERY_THEN_FETCH, SearchType.QUERY_AND_FETCH };
+		for (SearchType searchType : searchTypes) {
+			System.out.println(String.format("%-22s scored query: %6.3f ms, filter only: %6.3f ms", searchType,
+					averageMillis(WARMUP, ITERATIONS, search(searchType, false)), averageMillis(WARMUP, ITERATIONS, search(searchType, true))));
+		}
+	}
+
+	private Run search(final SearchType searchType, final boolean filterOnly) {
+		return new Run() {
+			@Override
+			public void run(int i) {
+				Page<User> page = new Page<User>();
+				page.setPageSize(10);
+				NativeSearchQueryBuilder builder = new NativeSearchQueryBuilder().withPageable(page).withSearchType(searchType);
+				if (filterOnly) {
+					builder.withQuery(QueryBuilders.matchAllQuery()).withFilter(FilterBuilders.prefixFilter("username", "u" + i % 10));
+				} else {
+					builder.withQuery(prefixQuery("username", "u" + i % 10));
+				}
+				DemonPredict.notNull(userRepository.search(builder.build()));
+			}
+		};
+	}
+}
@@ -0,0 +1,19 @@
+package com.weasel.elasticsearch.test.domain;
+
+/**
+ * projection of {@link User} for list views
+ * 
+ * @author Dylan
+ */
+public class UserName {
+
+	private String username;
+
+	public String getUsername() {
+		return username;
+	}
+
+	public void setUsername(String username) {
+		this.username = username;
+	}
+}